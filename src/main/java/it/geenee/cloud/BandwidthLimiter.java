@@ -0,0 +1,71 @@
+package it.geenee.cloud;
+
+
+/**
+ * Token bucket that limits the bandwidth of all file transfers of storages that are configured with this limiter (e.g.
+ * cloud.getStorage(Cloud.configure().bandwidthLimiter(limiter))). Tokens (bytes) are added at a constant rate up to the
+ * burst size. Transfers take tokens for each chunk they send or receive and pause if the bucket is empty, uploads stop
+ * writing and downloads stop reading from the connection until enough tokens are available again
+ */
+public class BandwidthLimiter {
+
+	// rate in bytes per nanosecond and maximum number of tokens
+	double rate;
+	final long burst;
+
+	// available tokens, negative if chunks were taken in advance
+	double tokens;
+	long time;
+
+
+	/**
+	 * Constructor
+	 * @param bytesPerSecond maximum average bandwidth
+	 * @param burst maximum number of bytes that can be transferred at once after a pause
+	 * @throws IllegalArgumentException if the bandwidth is not positive
+	 */
+	public BandwidthLimiter(long bytesPerSecond, long burst) {
+		this.rate = getRate(bytesPerSecond);
+		this.burst = burst;
+		this.tokens = burst;
+		this.time = System.nanoTime();
+	}
+
+	/**
+	 * Change the bandwidth, e.g. depending on the time of day
+	 * @param bytesPerSecond maximum average bandwidth
+	 * @throws IllegalArgumentException if the bandwidth is not positive
+	 */
+	public synchronized void setBandwidth(long bytesPerSecond) {
+		double rate = getRate(bytesPerSecond);
+		update();
+		this.rate = rate;
+	}
+
+	/**
+	 * Take tokens for a chunk that gets transferred now
+	 * @param bytes size of chunk
+	 * @return time in nanoseconds to pause before the next chunk, 0 if tokens are left
+	 */
+	public synchronized long take(int bytes) {
+		update();
+		this.tokens -= bytes;
+		return this.tokens >= 0 ? 0 : (long) (-this.tokens / this.rate);
+	}
+
+	// helpers
+
+	// convert bandwidth to bytes per nanosecond, a bandwidth of 0 would pause transfers forever
+	static double getRate(long bytesPerSecond) {
+		if (bytesPerSecond <= 0)
+			throw new IllegalArgumentException("Bandwidth must be positive: " + bytesPerSecond);
+		return bytesPerSecond / 1e9;
+	}
+
+	// add the tokens since the last update
+	void update() {
+		long now = System.nanoTime();
+		this.tokens = Math.min(this.burst, this.tokens + (now - this.time) * this.rate);
+		this.time = now;
+	}
+}
@@ -0,0 +1,29 @@
+package it.geenee.cloud;
+
+import java.util.Map;
+
+/**
+ * Result of uploading a batch of small objects
+ */
+public class BatchUploadReport {
+	// uploaded files, remote path -> file info
+	public final Map<String, FileInfo> files;
+
+	// files that could not be uploaded, remote path -> cause
+	public final Map<String, Throwable> failures;
+
+
+	public BatchUploadReport(Map<String, FileInfo> files, Map<String, Throwable> failures) {
+		this.files = files;
+		this.failures = failures;
+	}
+
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append('{');
+		Cloud.append(b, "uploaded", this.files.size());
+		Cloud.append(b, "failures", this.failures.size());
+		b.append('}');
+		return b.toString();
+	}
+}
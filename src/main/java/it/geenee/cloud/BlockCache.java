@@ -0,0 +1,242 @@
+package it.geenee.cloud;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.geenee.cloud.http.HttpCloud;
+import org.apache.commons.codec.binary.Hex;
+
+
+/**
+ * Disk-backed cache for blocks of remote files. A block is identified by path and hash (e.g. ETag) of the remote file
+ * and by its offset and length in the file, i.e. by its index if all blocks have the same size. Blocks are stored as files
+ * in a directory whose total size is bounded. The least recently used blocks are evicted first. The cache can be shared
+ * by multiple storage objects by setting it in the configuration (Cloud.configure().cache(cache))
+ */
+public class BlockCache {
+	// directory where the blocks are stored
+	final File directory;
+
+	// maximum total size of all blocks
+	final long maxSize;
+
+	// index of blocks in access order: file name to block length
+	final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+	long size = 0;
+
+	// statistics
+	final AtomicLong hitCount = new AtomicLong();
+	final AtomicLong missCount = new AtomicLong();
+	final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * Constructor. Blocks that already exist in the directory are added to the index in the order of their modification time
+	 * @param directory directory where the blocks are stored, gets created if it does not exist
+	 * @param maxSize maximum total size of all blocks in bytes
+	 * @throws IOException
+	 */
+	public BlockCache(File directory, long maxSize) throws IOException {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Unable to create cache directory " + directory);
+
+		// add existing blocks to index, oldest first
+		File[] files = directory.listFiles((dir, name) -> name.endsWith(".block"));
+		if (files != null) {
+			Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+			synchronized (this) {
+				for (File file : files) {
+					this.index.put(file.getName(), file.length());
+					this.size += file.length();
+				}
+				evict();
+			}
+		}
+	}
+
+	/**
+	 * Copy a block from the cache to a file
+	 * @param path path of the remote file
+	 * @param hash hash of the remote file
+	 * @param offset offset of block in remote file
+	 * @param length length of block
+	 * @param file file to copy the block to. The block is written at the same offset as in the remote file
+	 * @return true if the block was found in the cache
+	 */
+	public boolean get(String path, String hash, long offset, int length, FileChannel file) {
+		String name = getName(path, hash, offset, length);
+		synchronized (this) {
+			// lookup marks block as most recently used
+			if (this.index.get(name) == null) {
+				this.missCount.incrementAndGet();
+				return false;
+			}
+		}
+
+		// copy block, fails if it was evicted in the meantime
+		try (RandomAccessFile block = new RandomAccessFile(new File(this.directory, name), "r")) {
+			// copy using a buffer as transferFrom() does not write beyond the end of the file
+			FileChannel channel = block.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(65536);
+			long position = 0;
+			while (position < length) {
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), length - position));
+				if (channel.read(buffer, position) <= 0)
+					throw new IOException("Block too short");
+				buffer.flip();
+				while (buffer.hasRemaining())
+					position += file.write(buffer, offset + position);
+			}
+		} catch (IOException e) {
+			remove(name);
+			this.missCount.incrementAndGet();
+			return false;
+		}
+		this.hitCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Copy a block from a file into the cache. Least recently used blocks get evicted if the cache becomes too large
+	 * @param path path of the remote file
+	 * @param hash hash of the remote file
+	 * @param offset offset of block in remote file
+	 * @param length length of block
+	 * @param file file to copy the block from. The block is read from the same offset as in the remote file
+	 * @throws IOException
+	 */
+	public void put(String path, String hash, long offset, int length, FileChannel file) throws IOException {
+		if (length > this.maxSize)
+			return;
+		String name = getName(path, hash, offset, length);
+		synchronized (this) {
+			if (this.index.containsKey(name))
+				return;
+		}
+
+		// copy block to temporary file so that readers never see a partially written block
+		File tempFile = File.createTempFile("block", ".tmp", this.directory);
+		try {
+			try (RandomAccessFile block = new RandomAccessFile(tempFile, "rw")) {
+				FileChannel channel = block.getChannel();
+				long position = 0;
+				while (position < length) {
+					long count = file.transferTo(offset + position, length - position, channel);
+					if (count <= 0)
+						throw new IOException("File too short");
+					position += count;
+				}
+			}
+
+			synchronized (this) {
+				if (!tempFile.renameTo(new File(this.directory, name)))
+					throw new IOException("Unable to store block " + name);
+				if (this.index.put(name, (long) length) == null)
+					this.size += length;
+				evict();
+			}
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	/**
+	 * Remove all blocks from the cache
+	 */
+	public synchronized void clear() {
+		for (String name : this.index.keySet()) {
+			new File(this.directory, name).delete();
+		}
+		this.index.clear();
+		this.size = 0;
+	}
+
+	/**
+	 * @return total size of all blocks in the cache
+	 */
+	public synchronized long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return number of blocks in the cache
+	 */
+	public synchronized int getBlockCount() {
+		return this.index.size();
+	}
+
+	/**
+	 * @return number of get() calls that found the block
+	 */
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	/**
+	 * @return number of get() calls that did not find the block
+	 */
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	/**
+	 * @return number of blocks that were evicted to keep the cache size below the maximum
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount.get();
+	}
+
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append('{');
+		Cloud.append(b, "directory", this.directory.getPath());
+		Cloud.append(b, "size", getSize());
+		Cloud.append(b, "blockCount", getBlockCount());
+		Cloud.append(b, "hitCount", getHitCount());
+		Cloud.append(b, "missCount", getMissCount());
+		Cloud.append(b, "evictionCount", getEvictionCount());
+		b.append('}');
+		return b.toString();
+	}
+
+	// helpers
+
+	static String getName(String path, String hash, long offset, int length) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			md.update((path + '\n' + hash + '\n' + offset + '\n' + length).getBytes(HttpCloud.UTF_8));
+			return Hex.encodeHexString(md.digest()) + ".block";
+		} catch (Exception e) {
+			// SHA-256 is supported by every java platform
+			throw new IllegalStateException(e);
+		}
+	}
+
+	synchronized void remove(String name) {
+		Long length = this.index.remove(name);
+		if (length != null) {
+			this.size -= length;
+			new File(this.directory, name).delete();
+		}
+	}
+
+	// evict least recently used blocks until the cache is small enough. The caller must synchronize on this
+	void evict() {
+		Iterator<Map.Entry<String, Long>> it = this.index.entrySet().iterator();
+		while (this.size > this.maxSize && it.hasNext()) {
+			Map.Entry<String, Long> entry = it.next();
+			new File(this.directory, entry.getKey()).delete();
+			this.size -= entry.getValue();
+			it.remove();
+			this.evictionCount.incrementAndGet();
+		}
+	}
+}
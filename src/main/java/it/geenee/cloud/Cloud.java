@@ -46,6 +46,11 @@ public interface Cloud {
 		public int partSize = 0;
 		public int channelCount = 0;
 		public String prefix = null;
+		public BlockCache cache = null;
+		public MetadataCache metadataCache = null;
+		public TransferManager transferManager = null;
+		public Integer priority = null;
+		public BandwidthLimiter bandwidthLimiter = null;
 
 		public ConfigBuilder region(String region) {
 			this.region = region;
@@ -122,6 +127,51 @@ public interface Cloud {
 			this.prefix = prefix;
 			return this;
 		}
+
+		/**
+		 * @param cache local cache for blocks of downloaded files
+		 * @return configuration builder
+		 */
+		public ConfigBuilder cache(BlockCache cache) {
+			this.cache = cache;
+			return this;
+		}
+
+		/**
+		 * @param metadataCache in-memory cache for results of list and get info operations
+		 * @return configuration builder
+		 */
+		public ConfigBuilder metadataCache(MetadataCache metadataCache) {
+			this.metadataCache = metadataCache;
+			return this;
+		}
+
+		/**
+		 * @param transferManager transfer manager that schedules the parts of file transfers together with other storages
+		 * @return configuration builder
+		 */
+		public ConfigBuilder transferManager(TransferManager transferManager) {
+			this.transferManager = transferManager;
+			return this;
+		}
+
+		/**
+		 * @param priority priority of file transfers in the transfer manager, higher values get served first
+		 * @return configuration builder
+		 */
+		public ConfigBuilder priority(int priority) {
+			this.priority = priority;
+			return this;
+		}
+
+		/**
+		 * @param bandwidthLimiter limits the bandwidth of file transfers together with other storages
+		 * @return configuration builder
+		 */
+		public ConfigBuilder bandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+			this.bandwidthLimiter = bandwidthLimiter;
+			return this;
+		}
 	}
 
 	interface CredentialsProvider {
@@ -150,9 +200,21 @@ public interface Cloud {
 		public final int partSize;
 		public final int channelCount;
 		public final String prefix;
+		public final BlockCache cache;
+		public final MetadataCache metadataCache;
+		public final TransferManager transferManager;
+		// null if not set, so that a storage can override any priority including with 0
+		public final Integer priority;
+		public final BandwidthLimiter bandwidthLimiter;
 
 		public Configuration(String region, CredentialsProvider credentialsProvider, int timeout, int retryCount,
 				int partSize, int channelCount, String prefix) {
+			this(region, credentialsProvider, timeout, retryCount, partSize, channelCount, prefix, null, null, null, null, null);
+		}
+
+		public Configuration(String region, CredentialsProvider credentialsProvider, int timeout, int retryCount,
+				int partSize, int channelCount, String prefix, BlockCache cache, MetadataCache metadataCache,
+				TransferManager transferManager, Integer priority, BandwidthLimiter bandwidthLimiter) {
 			this.region = region;
 			this.credentialsProvider = credentialsProvider;
 			this.timeout = timeout;
@@ -160,6 +222,11 @@ public interface Cloud {
 			this.partSize = partSize;
 			this.channelCount = channelCount;
 			this.prefix = prefix;
+			this.cache = cache;
+			this.metadataCache = metadataCache;
+			this.transferManager = transferManager;
+			this.priority = priority;
+			this.bandwidthLimiter = bandwidthLimiter;
 		}
 
 		public Configuration merge(Configuration configuration) {
@@ -172,7 +239,12 @@ public interface Cloud {
 					configuration.retryCount > 0 ? configuration.retryCount : this.retryCount,
 					configuration.partSize > 0 ? configuration.partSize : this.partSize,
 					configuration.channelCount > 0 ? configuration.channelCount : this.channelCount,
-					configuration.prefix != null ? configuration.prefix : this.prefix
+					configuration.prefix != null ? configuration.prefix : this.prefix,
+					configuration.cache != null ? configuration.cache : this.cache,
+					configuration.metadataCache != null ? configuration.metadataCache : this.metadataCache,
+					configuration.transferManager != null ? configuration.transferManager : this.transferManager,
+					configuration.priority != null ? configuration.priority : this.priority,
+					configuration.bandwidthLimiter != null ? configuration.bandwidthLimiter : this.bandwidthLimiter
 			);
 		}
 	}
@@ -0,0 +1,33 @@
+package it.geenee.cloud;
+
+/**
+ * Information about one level of the directory tree in a cloud storage, i.e. the files and sub-directories that have
+ * the same path up to the last '/'
+ */
+public class DirectoryInfo {
+	// path of the directory
+	public final String path;
+
+	// files in the directory, without files in sub-directories
+	public final FileInfo[] files;
+
+	// paths of the sub-directories, each ending with '/'
+	public final String[] directories;
+
+
+	public DirectoryInfo(String path, FileInfo[] files, String[] directories) {
+		this.path = path;
+		this.files = files;
+		this.directories = directories;
+	}
+
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append('{');
+		Cloud.append(b, "path", this.path);
+		Cloud.append(b, "files", this.files.length);
+		Cloud.append(b, "directories", this.directories.length);
+		b.append('}');
+		return b.toString();
+	}
+}
@@ -0,0 +1,108 @@
+package it.geenee.cloud;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+
+/**
+ * Mirrors a remote directory to a local directory so that the local files have the same paths and contents as the
+ * remote files. The remote listing is requested page by page and each file is handled as it is listed: files that do
+ * not exist locally or differ in size are downloaded, files with the same size are hashed in parallel and only
+ * downloaded if the hash differs, see DirectoryTransfer. Local files that do not exist remotely are kept
+ */
+public class DirectoryMirror extends DirectoryTransfer {
+	final Path directory;
+
+
+	/**
+	 * Constructor
+	 * @param storage cloud storage to mirror from
+	 * @param remotePath remote directory, e.g. "bucket/foo/"
+	 * @param directory local directory, gets created if it does not exist
+	 * @param threadCount number of threads for hashing files
+	 */
+	public DirectoryMirror(Storage storage, String remotePath, File directory, int threadCount) {
+		super(storage, remotePath, threadCount);
+		this.directory = directory.toPath().toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Mirror and block until done
+	 * @return report
+	 * @throws Exception if the remote listing can not be read
+	 */
+	public MirrorReport run() throws Exception {
+		try {
+			Storage.Listing<FileInfo> listing = this.storage.listPages(this.remotePath, Storage.ListMode.UNVERSIONED);
+			List<FileInfo> page;
+			while ((page = listing.next()) != null) {
+				for (FileInfo remoteFile : page) {
+					// keys ending with '/' are directory placeholders
+					boolean isDirectory = remoteFile.path.endsWith("/");
+					Path file = this.directory.resolve(isDirectory ? remoteFile.path.substring(0, remoteFile.path.length() - 1) : remoteFile.path).normalize();
+					if (!file.startsWith(this.directory)) {
+						failed(remoteFile.path, new IOException("Path outside of directory: " + remoteFile.path));
+						continue;
+					}
+					if (isDirectory) {
+						try {
+							Files.createDirectories(file);
+						} catch (IOException e) {
+							failed(remoteFile.path, e);
+						}
+						continue;
+					}
+
+					BasicFileAttributes attributes;
+					try {
+						attributes = Files.readAttributes(file, BasicFileAttributes.class);
+					} catch (NoSuchFileException e) {
+						attributes = null;
+					}
+					if (attributes != null && attributes.isRegularFile() && attributes.size() == remoteFile.size)
+						compare(file, remoteFile);
+					else
+						download(file, remoteFile);
+				}
+			}
+
+			// wait until all hashes and downloads are done
+			await();
+			synchronized (this) {
+				return new MirrorReport(this.unchanged, this.transferred, this.transferredBytes, this.failures);
+			}
+		} finally {
+			this.pool.shutdown();
+		}
+	}
+
+	// hash a local file that has the same size as the remote file and download it if the hash differs
+	void compare(Path file, FileInfo remoteFile) {
+		compare(remoteFile.path, file, remoteFile.hash, () -> download(file, remoteFile));
+	}
+
+	// download a file, blocks until enough connections are free
+	void download(Path file, FileInfo remoteFile) {
+		transfer(remoteFile.path, remoteFile.size, () -> {
+			Files.createDirectories(file.getParent());
+			FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			Transfer transfer = this.storage.startDownload(channel, this.remotePath + remoteFile.path, null);
+			transfer.addListener(f -> {
+				try {
+					channel.close();
+
+					// do not leave a partial file
+					if (!transfer.isSuccess())
+						Files.deleteIfExists(file);
+				} catch (IOException e) {
+					failed(remoteFile.path, e);
+				}
+			});
+			return transfer;
+		});
+	}
+}
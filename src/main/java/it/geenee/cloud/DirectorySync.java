@@ -0,0 +1,183 @@
+package it.geenee.cloud;
+
+import io.netty.util.concurrent.Future;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Synchronizes a local directory tree to a cloud storage so that the remote files have the same paths and contents as
+ * the local files. The local tree is walked in parallel and merged with the remote listing that is requested page by
+ * page. Files that differ in size are uploaded, files with the same size are hashed and only uploaded if the hash
+ * differs, see DirectoryTransfer. Optionally remote files that do not exist locally are deleted using batch delete
+ */
+public class DirectorySync extends DirectoryTransfer {
+	final Path directory;
+	final boolean delete;
+
+	// a local file
+	static class LocalFile {
+		// path relative to the directory with '/' as separator
+		final String path;
+		final Path file;
+		final long size;
+
+		LocalFile(String path, Path file, long size) {
+			this.path = path;
+			this.file = file;
+			this.size = size;
+		}
+	}
+
+
+	/**
+	 * Constructor
+	 * @param storage cloud storage to synchronize to
+	 * @param directory local directory
+	 * @param remotePath remote directory, e.g. "bucket/foo/"
+	 * @param delete true to delete remote files that do not exist locally
+	 * @param threadCount number of threads for walking the local tree and hashing files
+	 */
+	public DirectorySync(Storage storage, File directory, String remotePath, boolean delete, int threadCount) {
+		super(storage, remotePath, threadCount);
+		this.directory = directory.toPath();
+		this.delete = delete;
+	}
+
+	/**
+	 * Synchronize and block until done
+	 * @return report
+	 * @throws Exception if the local directory or the remote listing can not be read
+	 */
+	public SyncReport run() throws Exception {
+		try {
+			// walk local tree in parallel and sort the files in listing order
+			ConcurrentLinkedQueue<LocalFile> queue = new ConcurrentLinkedQueue<>();
+			this.pool.invoke(new Walk(this.directory, "", queue));
+			LocalFile[] localFiles = queue.toArray(new LocalFile[queue.size()]);
+			queue.clear();
+			Arrays.sort(localFiles, (a, b) -> ListingSnapshot.compare(a.path, b.path));
+
+			// merge with remote listing
+			List<String> extraPaths = new ArrayList<>();
+			Storage.Listing<FileInfo> listing = this.storage.listPages(this.remotePath, Storage.ListMode.UNVERSIONED);
+			int localIndex = 0;
+			List<FileInfo> page;
+			while ((page = listing.next()) != null) {
+				for (FileInfo remoteFile : page) {
+					// local files that are before the remote file do not exist remotely
+					while (localIndex < localFiles.length && ListingSnapshot.compare(localFiles[localIndex].path, remoteFile.path) < 0)
+						upload(localFiles[localIndex++]);
+
+					if (localIndex < localFiles.length && localFiles[localIndex].path.equals(remoteFile.path)) {
+						// file exists locally and remotely
+						LocalFile localFile = localFiles[localIndex++];
+						if (localFile.size != remoteFile.size)
+							upload(localFile);
+						else
+							compare(localFile, remoteFile.hash);
+					} else if (!remoteFile.path.endsWith("/")) {
+						// remote file does not exist locally (keys ending with '/' are directory placeholders)
+						extraPaths.add(remoteFile.path);
+					}
+				}
+			}
+			while (localIndex < localFiles.length)
+				upload(localFiles[localIndex++]);
+
+			// delete remote files that do not exist locally while the uploads are in progress
+			Future<Map<String, Throwable>> deleteFuture = null;
+			if (this.delete && !extraPaths.isEmpty()) {
+				List<String> remotePaths = new ArrayList<>(extraPaths.size());
+				for (String path : extraPaths) {
+					remotePaths.add(this.remotePath + path);
+				}
+				deleteFuture = this.storage.startDelete(remotePaths);
+			}
+
+			// wait until all hashes and uploads are done
+			await();
+
+			long deleted = 0;
+			if (deleteFuture != null) {
+				Map<String, Throwable> deleteFailures = deleteFuture.get();
+				synchronized (this) {
+					for (Map.Entry<String, Throwable> entry : deleteFailures.entrySet()) {
+						this.failures.put(entry.getKey().substring(this.remotePath.length()), entry.getValue());
+					}
+				}
+				deleted = extraPaths.size() - deleteFailures.size();
+			}
+
+			synchronized (this) {
+				return new SyncReport(this.unchanged, this.transferred, this.transferredBytes, deleted, this.failures);
+			}
+		} finally {
+			this.pool.shutdown();
+		}
+	}
+
+	// lists a local directory and walks its sub-directories in parallel
+	static class Walk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final Path directory;
+		final String path;
+		final Queue<LocalFile> queue;
+
+		Walk(Path directory, String path, Queue<LocalFile> queue) {
+			this.directory = directory;
+			this.path = path;
+			this.queue = queue;
+		}
+
+		@Override
+		protected void compute() {
+			List<Walk> walks = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory)) {
+				for (Path file : stream) {
+					BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					String path = this.path + file.getFileName().toString();
+					if (attributes.isDirectory())
+						walks.add(new Walk(file, path + '/', this.queue));
+					else if (attributes.isRegularFile())
+						this.queue.add(new LocalFile(path, file, attributes.size()));
+
+					// symbolic links and other files are skipped
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			invokeAll(walks);
+		}
+	}
+
+	// hash a file that has the same size as the remote file and upload it if the hash differs
+	void compare(LocalFile localFile, String remoteHash) {
+		compare(localFile.path, localFile.file, remoteHash, () -> upload(localFile));
+	}
+
+	// upload a file, blocks until enough connections are free
+	void upload(LocalFile localFile) {
+		transfer(localFile.path, localFile.size, () -> {
+			FileChannel channel = FileChannel.open(localFile.file, StandardOpenOption.READ);
+			Transfer transfer = this.storage.startUpload(channel, this.remotePath + localFile.path);
+			transfer.addListener(f -> {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					// file was only read
+				}
+			});
+			return transfer;
+		});
+	}
+}
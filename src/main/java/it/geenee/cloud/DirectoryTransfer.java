@@ -0,0 +1,125 @@
+package it.geenee.cloud;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+
+
+/**
+ * Base class of DirectorySync and DirectoryMirror. Files with the same size as their counterpart are hashed in parallel
+ * on a thread pool and only transferred if the hash differs. All transfers share a budget of configuration.channelCount
+ * connections: a small file takes one connection, a large file takes one connection per part up to the whole budget, so
+ * many small files are transferred concurrently while large files are transferred in parallel parts. Tracks the hashes
+ * and transfers in progress and collects the numbers for the report
+ */
+class DirectoryTransfer {
+	final Storage storage;
+
+	// remote path ending with '/' (or empty if the storage has a prefix), the paths of the files are relative to it
+	final String remotePath;
+
+	final ForkJoinPool pool;
+
+	// connection budget, fair so that large files that need many connections are not starved by small files
+	final int connectionCount;
+	final Semaphore connections;
+
+	// number of hashes and transfers in progress
+	int pendingCount = 0;
+
+	// report
+	long unchanged = 0;
+	long transferred = 0;
+	long transferredBytes = 0;
+	final Map<String, Throwable> failures = new LinkedHashMap<>();
+
+
+	DirectoryTransfer(Storage storage, String remotePath, int threadCount) {
+		this.storage = storage;
+		this.remotePath = remotePath.isEmpty() || remotePath.endsWith("/") ? remotePath : remotePath + '/';
+		this.pool = new ForkJoinPool(threadCount);
+		this.connectionCount = storage.getConfiguration().channelCount;
+		this.connections = new Semaphore(this.connectionCount, true);
+	}
+
+	// hash a local file that has the same size as its counterpart in parallel and transfer it if the hash differs
+	void compare(String path, Path file, String hash, Runnable transfer) {
+		begin();
+		this.pool.execute(() -> {
+			try {
+				String localHash;
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+					localHash = this.storage.hash(channel);
+				}
+				if (localHash.equals(hash)) {
+					synchronized (this) {
+						++this.unchanged;
+					}
+				} else {
+					transfer.run();
+				}
+			} catch (Throwable e) {
+				failed(path, e);
+			} finally {
+				end();
+			}
+		});
+	}
+
+	// start a transfer, blocks until enough connections of the budget are free
+	void transfer(String path, long size, Callable<Transfer> start) {
+		long partSize = this.storage.getConfiguration().partSize;
+		int permits = (int) Math.max(1, Math.min(this.connectionCount, (size + partSize - 1) / partSize));
+		begin();
+		try {
+			this.connections.acquire(permits);
+		} catch (InterruptedException e) {
+			failed(path, e);
+			end();
+			return;
+		}
+		try {
+			Transfer transfer = start.call();
+			transfer.addListener(f -> {
+				if (transfer.isSuccess()) {
+					synchronized (this) {
+						++this.transferred;
+						this.transferredBytes += size;
+					}
+				} else {
+					failed(path, transfer.cause());
+				}
+				this.connections.release(permits);
+				end();
+			});
+		} catch (Throwable e) {
+			failed(path, e);
+			this.connections.release(permits);
+			end();
+		}
+	}
+
+	// wait until all hashes and transfers are done
+	synchronized void await() throws InterruptedException {
+		while (this.pendingCount > 0)
+			wait();
+	}
+
+	synchronized void failed(String path, Throwable cause) {
+		this.failures.put(path, cause);
+	}
+
+	synchronized void begin() {
+		++this.pendingCount;
+	}
+
+	synchronized void end() {
+		if (--this.pendingCount == 0)
+			notifyAll();
+	}
+}
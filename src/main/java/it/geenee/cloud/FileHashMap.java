@@ -0,0 +1,303 @@
+package it.geenee.cloud;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import it.geenee.cloud.http.HttpCloud;
+
+
+/**
+ * Compact map from file path to file hash for listings with millions of files, e.g. for synchronizing a local directory
+ * with a remote directory. The paths are stored in one UTF-8 byte array and hashes that consist of a hex digest with
+ * optional '-' and part count (e.g. S3 ETag) are stored in binary form like in FileList. Lookup uses open addressing
+ * with linear probing. Removing entries does not free memory
+ */
+public class FileHashMap extends AbstractMap<String, String> {
+
+	// entries: path i is located between pathOffsets[i] and pathOffsets[i + 1]
+	int entryCount = 0;
+	byte[] paths = new byte[4096];
+	int[] pathOffsets = new int[65];
+	int[] pathHashes = new int[64];
+	byte[] digests = new byte[64 * FileList.DIGEST_LENGTH];
+	int[] partCounts = new int[64];
+
+	// hashes that are not stored in binary form, only allocated if needed
+	String[] otherHashes;
+
+	// removed entries
+	final BitSet removed = new BitSet();
+	int size = 0;
+
+	// hash table: index of entry + 1, 0 for empty slot
+	int[] slots = new int[128];
+	int usedSlots = 0;
+
+	// incremented on each structural modification
+	int modCount = 0;
+
+
+	public FileHashMap() {
+	}
+
+	/**
+	 * Copy constructor
+	 * @param map map to copy
+	 */
+	public FileHashMap(FileHashMap map) {
+		this.entryCount = map.entryCount;
+		this.paths = map.paths.clone();
+		this.pathOffsets = map.pathOffsets.clone();
+		this.pathHashes = map.pathHashes.clone();
+		this.digests = map.digests.clone();
+		this.partCounts = map.partCounts.clone();
+		this.otherHashes = map.otherHashes == null ? null : map.otherHashes.clone();
+		this.removed.or(map.removed);
+		this.size = map.size;
+		this.slots = map.slots.clone();
+		this.usedSlots = map.usedSlots;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key instanceof String && find(((String) key).getBytes(HttpCloud.UTF_8)) >= 0;
+	}
+
+	@Override
+	public String get(Object key) {
+		if (!(key instanceof String))
+			return null;
+		int index = find(((String) key).getBytes(HttpCloud.UTF_8));
+		return index >= 0 ? getHash(index) : null;
+	}
+
+	@Override
+	public String put(String key, String hash) {
+		byte[] path = key.getBytes(HttpCloud.UTF_8);
+		int index = find(path);
+		if (index >= 0) {
+			// replace hash of existing entry
+			String oldHash = getHash(index);
+			setHash(index, hash);
+			return oldHash;
+		}
+
+		// add new entry, rehash if the hash table becomes too full (removed entries still occupy slots)
+		if ((this.usedSlots + 1) * 4 > this.slots.length * 3)
+			rehash(Math.max(128, Integer.highestOneBit((this.size + 1) * 2) * 2));
+		index = this.entryCount;
+		if (index == this.pathHashes.length)
+			grow(index * 2);
+		int offset = this.pathOffsets[index];
+		if (offset + path.length > this.paths.length)
+			this.paths = Arrays.copyOf(this.paths, Math.max(this.paths.length * 2, offset + path.length));
+		System.arraycopy(path, 0, this.paths, offset, path.length);
+		this.pathOffsets[index + 1] = offset + path.length;
+		int pathHash = hash(path);
+		this.pathHashes[index] = pathHash;
+		setHash(index, hash);
+		this.entryCount = index + 1;
+		++this.size;
+		++this.modCount;
+
+		// insert into hash table
+		int mask = this.slots.length - 1;
+		int slot = pathHash & mask;
+		while (this.slots[slot] != 0)
+			slot = (slot + 1) & mask;
+		this.slots[slot] = index + 1;
+		++this.usedSlots;
+		return null;
+	}
+
+	@Override
+	public String remove(Object key) {
+		if (!(key instanceof String))
+			return null;
+		int index = find(((String) key).getBytes(HttpCloud.UTF_8));
+		if (index < 0)
+			return null;
+		String hash = getHash(index);
+		remove(index);
+		return hash;
+	}
+
+	@Override
+	public void clear() {
+		this.entryCount = 0;
+		this.pathOffsets[0] = 0;
+		this.otherHashes = null;
+		this.removed.clear();
+		this.size = 0;
+		Arrays.fill(this.slots, 0);
+		this.usedSlots = 0;
+		++this.modCount;
+	}
+
+	@Override
+	public Set<Entry<String, String>> entrySet() {
+		return new AbstractSet<Entry<String, String>>() {
+			@Override
+			public int size() {
+				return FileHashMap.this.size;
+			}
+
+			@Override
+			public Iterator<Entry<String, String>> iterator() {
+				return new Iterator<Entry<String, String>>() {
+					int index = FileHashMap.this.next(0);
+					int last = -1;
+					int modCount = FileHashMap.this.modCount;
+
+					@Override
+					public boolean hasNext() {
+						return this.index < FileHashMap.this.entryCount;
+					}
+
+					@Override
+					public Entry<String, String> next() {
+						if (this.modCount != FileHashMap.this.modCount)
+							throw new ConcurrentModificationException();
+						if (this.index >= FileHashMap.this.entryCount)
+							throw new NoSuchElementException();
+						this.last = this.index;
+						this.index = FileHashMap.this.next(this.index + 1);
+						return new SimpleImmutableEntry<>(getPath(this.last), getHash(this.last));
+					}
+
+					@Override
+					public void remove() {
+						if (this.last < 0)
+							throw new IllegalStateException();
+						if (this.modCount != FileHashMap.this.modCount)
+							throw new ConcurrentModificationException();
+						FileHashMap.this.remove(this.last);
+						this.modCount = FileHashMap.this.modCount;
+						this.last = -1;
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Release unused memory after the last file was added
+	 */
+	public void trim() {
+		grow(this.entryCount);
+		this.paths = Arrays.copyOf(this.paths, this.pathOffsets[this.entryCount]);
+	}
+
+	// helpers
+
+	String getPath(int index) {
+		int offset = this.pathOffsets[index];
+		return new String(this.paths, offset, this.pathOffsets[index + 1] - offset, HttpCloud.UTF_8);
+	}
+
+	String getHash(int index) {
+		int partCount = this.partCounts[index];
+		if (partCount == FileList.NO_HASH)
+			return null;
+		if (partCount == FileList.OTHER_HASH)
+			return this.otherHashes[index];
+		return FileList.formatHash(this.digests, index * FileList.DIGEST_LENGTH, partCount);
+	}
+
+	void setHash(int index, String hash) {
+		int partCount = hash == null ? FileList.NO_HASH : FileList.parseHash(hash, this.digests, index * FileList.DIGEST_LENGTH);
+		this.partCounts[index] = partCount;
+		if (partCount == FileList.OTHER_HASH) {
+			if (this.otherHashes == null)
+				this.otherHashes = new String[this.pathHashes.length];
+			this.otherHashes[index] = hash;
+		} else if (this.otherHashes != null) {
+			this.otherHashes[index] = null;
+		}
+	}
+
+	// get index of next entry that is not removed, starting at given index
+	int next(int index) {
+		index = this.removed.nextClearBit(index);
+		return Math.min(index, this.entryCount);
+	}
+
+	// find entry with given path, returns -1 if not found
+	int find(byte[] path) {
+		int mask = this.slots.length - 1;
+		int pathHash = hash(path);
+		int slot = pathHash & mask;
+		int entry;
+		while ((entry = this.slots[slot]) != 0) {
+			int index = entry - 1;
+			if (this.pathHashes[index] == pathHash && !this.removed.get(index) && equals(index, path))
+				return index;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	boolean equals(int index, byte[] path) {
+		int offset = this.pathOffsets[index];
+		int length = this.pathOffsets[index + 1] - offset;
+		if (length != path.length)
+			return false;
+		for (int i = 0; i < length; ++i) {
+			if (this.paths[offset + i] != path[i])
+				return false;
+		}
+		return true;
+	}
+
+	void remove(int index) {
+		// the entry stays in the hash table so that probing continues past it, it is dropped on the next rehash
+		this.removed.set(index);
+		if (this.otherHashes != null)
+			this.otherHashes[index] = null;
+		--this.size;
+		++this.modCount;
+	}
+
+	void rehash(int capacity) {
+		this.slots = new int[capacity];
+		int mask = capacity - 1;
+		for (int index = next(0); index < this.entryCount; index = next(index + 1)) {
+			int slot = this.pathHashes[index] & mask;
+			while (this.slots[slot] != 0)
+				slot = (slot + 1) & mask;
+			this.slots[slot] = index + 1;
+		}
+		this.usedSlots = this.size;
+	}
+
+	void grow(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.pathOffsets = Arrays.copyOf(this.pathOffsets, capacity + 1);
+		this.pathHashes = Arrays.copyOf(this.pathHashes, capacity);
+		this.digests = Arrays.copyOf(this.digests, capacity * FileList.DIGEST_LENGTH);
+		this.partCounts = Arrays.copyOf(this.partCounts, capacity);
+		if (this.otherHashes != null)
+			this.otherHashes = Arrays.copyOf(this.otherHashes, capacity);
+	}
+
+	// hash of path with mixed bits as the slot index uses the lower bits
+	static int hash(byte[] path) {
+		int h = 0;
+		for (byte b : path) {
+			h = 31 * h + b;
+		}
+		h *= 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+}
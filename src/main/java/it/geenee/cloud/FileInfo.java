@@ -27,6 +27,9 @@ public class FileInfo {
 	// true if this is the latest version of the file, false if newer versions exist or unknown if newer versions exist
 	public final boolean latest;
 
+	// true if the hash was verified against the data of a completed transfer
+	public final boolean verified;
+
 
 	static final DateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
 	static {
@@ -35,12 +38,17 @@ public class FileInfo {
 
 
 	public FileInfo(String path, String hash, long size, long timestamp, String version, boolean latest) {
+		this(path, hash, size, timestamp, version, latest, false);
+	}
+
+	public FileInfo(String path, String hash, long size, long timestamp, String version, boolean latest, boolean verified) {
 		this.path = path;
 		this.hash = hash;
 		this.size = size;
 		this.timestamp = timestamp;
 		this.version = version;
 		this.latest = latest;
+		this.verified = verified;
 	}
 
 	public String getTimestampIso() {
@@ -56,6 +64,8 @@ public class FileInfo {
 		Cloud.append(b, "timestamp", DATE_FORMAT.format(new Date(this.timestamp)));
 		Cloud.append(b, "version", this.version);
 		Cloud.append(b, "latest", this.latest);
+		if (this.verified)
+			Cloud.append(b, "verified", this.verified);
 		b.append('}');
 		return b.toString();
 	}
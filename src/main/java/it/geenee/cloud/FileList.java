@@ -0,0 +1,254 @@
+package it.geenee.cloud;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import it.geenee.cloud.http.HttpCloud;
+
+
+/**
+ * Compact list of file infos for listings with millions of files. Instead of one FileInfo object per file, the paths
+ * are stored in one UTF-8 byte array, hashes that consist of a hex digest with optional '-' and part count (e.g. S3 ETag)
+ * are stored in binary form and sizes and timestamps are stored in long arrays. FileInfo objects are only created on
+ * demand by get()
+ */
+public class FileList implements Iterable<FileInfo> {
+	static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	// number of bytes of a binary digest, e.g. 16 for MD5
+	public static final int DIGEST_LENGTH = 16;
+
+	// marks a part count if the file has no hash (delete marker) or a hash that is not stored in binary form
+	static final int NO_HASH = -1;
+	static final int OTHER_HASH = -2;
+
+	int count = 0;
+
+	// paths: UTF-8 encoded paths of all files, path i is located between pathOffsets[i] and pathOffsets[i + 1]
+	byte[] paths = new byte[4096];
+	int[] pathOffsets = new int[65];
+
+	// hashes: binary digests and part counts (0 for hash without part count)
+	byte[] digests = new byte[64 * DIGEST_LENGTH];
+	int[] partCounts = new int[64];
+
+	// hashes that are not stored in binary form, only allocated if needed
+	String[] otherHashes;
+
+	long[] sizes = new long[64];
+	long[] timestamps = new long[64];
+
+	// versions, only allocated for versioned listings
+	String[] versions;
+	final BitSet latest = new BitSet();
+
+
+	/**
+	 * Add a file to the list
+	 */
+	public void add(String path, String hash, long size, long timestamp, String version, boolean latest) {
+		int index = this.count;
+		if (index == this.sizes.length)
+			grow(index * 2);
+
+		// append path
+		byte[] path8 = path.getBytes(HttpCloud.UTF_8);
+		int offset = this.pathOffsets[index];
+		if (offset + path8.length > this.paths.length)
+			this.paths = Arrays.copyOf(this.paths, Math.max(this.paths.length * 2, offset + path8.length));
+		System.arraycopy(path8, 0, this.paths, offset, path8.length);
+		this.pathOffsets[index + 1] = offset + path8.length;
+
+		// set hash
+		this.partCounts[index] = hash == null ? NO_HASH : parseHash(hash, this.digests, index * DIGEST_LENGTH);
+		if (this.partCounts[index] == OTHER_HASH) {
+			if (this.otherHashes == null)
+				this.otherHashes = new String[this.sizes.length];
+			this.otherHashes[index] = hash;
+		}
+
+		this.sizes[index] = size;
+		this.timestamps[index] = timestamp;
+		if (version != null) {
+			if (this.versions == null)
+				this.versions = new String[this.sizes.length];
+			this.versions[index] = version;
+		}
+		this.latest.set(index, latest);
+		this.count = index + 1;
+	}
+
+	/**
+	 * Release unused memory after the last file was added
+	 */
+	public void trim() {
+		grow(this.count);
+		this.paths = Arrays.copyOf(this.paths, this.pathOffsets[this.count]);
+	}
+
+	public int size() {
+		return this.count;
+	}
+
+	public String getPath(int index) {
+		checkIndex(index);
+		int offset = this.pathOffsets[index];
+		return new String(this.paths, offset, this.pathOffsets[index + 1] - offset, HttpCloud.UTF_8);
+	}
+
+	public String getHash(int index) {
+		checkIndex(index);
+		int partCount = this.partCounts[index];
+		if (partCount == NO_HASH)
+			return null;
+		if (partCount == OTHER_HASH)
+			return this.otherHashes[index];
+		return formatHash(this.digests, index * DIGEST_LENGTH, partCount);
+	}
+
+	public long getSize(int index) {
+		checkIndex(index);
+		return this.sizes[index];
+	}
+
+	public long getTimestamp(int index) {
+		checkIndex(index);
+		return this.timestamps[index];
+	}
+
+	public String getVersion(int index) {
+		checkIndex(index);
+		return this.versions == null ? null : this.versions[index];
+	}
+
+	public boolean isLatest(int index) {
+		checkIndex(index);
+		return this.latest.get(index);
+	}
+
+	/**
+	 * Create a file info
+	 * @param index index of file
+	 * @return new file info
+	 */
+	public FileInfo get(int index) {
+		return new FileInfo(getPath(index), getHash(index), getSize(index), getTimestamp(index), getVersion(index), isLatest(index));
+	}
+
+	/**
+	 * Convert to an array of file infos, e.g. for small lists
+	 * @return array of file infos
+	 */
+	public FileInfo[] toArray() {
+		FileInfo[] fileInfos = new FileInfo[this.count];
+		for (int i = 0; i < this.count; ++i) {
+			fileInfos[i] = get(i);
+		}
+		return fileInfos;
+	}
+
+	@Override
+	public Iterator<FileInfo> iterator() {
+		return new Iterator<FileInfo>() {
+			int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.index < FileList.this.count;
+			}
+
+			@Override
+			public FileInfo next() {
+				if (this.index >= FileList.this.count)
+					throw new NoSuchElementException();
+				return get(this.index++);
+			}
+		};
+	}
+
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append('{');
+		Cloud.append(b, "size", this.count);
+		b.append('}');
+		return b.toString();
+	}
+
+	// helpers
+
+	void checkIndex(int index) {
+		if (index < 0 || index >= this.count)
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + this.count);
+	}
+
+	void grow(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.pathOffsets = Arrays.copyOf(this.pathOffsets, capacity + 1);
+		this.digests = Arrays.copyOf(this.digests, capacity * DIGEST_LENGTH);
+		this.partCounts = Arrays.copyOf(this.partCounts, capacity);
+		if (this.otherHashes != null)
+			this.otherHashes = Arrays.copyOf(this.otherHashes, capacity);
+		this.sizes = Arrays.copyOf(this.sizes, capacity);
+		this.timestamps = Arrays.copyOf(this.timestamps, capacity);
+		if (this.versions != null)
+			this.versions = Arrays.copyOf(this.versions, capacity);
+	}
+
+	// get value of lower case hex digit, -1 if invalid
+	static int hexDigit(char ch) {
+		if (ch >= '0' && ch <= '9')
+			return ch - '0';
+		if (ch >= 'a' && ch <= 'f')
+			return ch - 'a' + 10;
+		return -1;
+	}
+
+	// format binary digest and part count as hash
+	static String formatHash(byte[] digests, int offset, int partCount) {
+		StringBuilder b = new StringBuilder(DIGEST_LENGTH * 2 + 6);
+		for (int i = 0; i < DIGEST_LENGTH; ++i) {
+			int d = digests[offset + i];
+			b.append(HEX[(d >> 4) & 15]).append(HEX[d & 15]);
+		}
+		if (partCount > 0)
+			b.append('-').append(partCount);
+		return b.toString();
+	}
+
+	/**
+	 * Parse a hash that consists of a hex digest of DIGEST_LENGTH bytes and an optional '-' and part count
+	 * @param hash hash, e.g. "fba9dede5f27731c9771645a39863328-2"
+	 * @param digests array to store the binary digest in
+	 * @param offset offset in digests
+	 * @return part count, 0 if there is no part count or OTHER_HASH if the hash has a different format
+	 */
+	static int parseHash(String hash, byte[] digests, int offset) {
+		int length = hash.length();
+		if (length < DIGEST_LENGTH * 2 || length > DIGEST_LENGTH * 2 && hash.charAt(DIGEST_LENGTH * 2) != '-')
+			return OTHER_HASH;
+		for (int i = 0; i < DIGEST_LENGTH; ++i) {
+			int high = hexDigit(hash.charAt(i * 2));
+			int low = hexDigit(hash.charAt(i * 2 + 1));
+			if (high < 0 || low < 0)
+				return OTHER_HASH;
+			digests[offset + i] = (byte) (high << 4 | low);
+		}
+		if (length == DIGEST_LENGTH * 2)
+			return 0;
+
+		// part count without leading zeros so that getHash() returns the same string
+		int begin = DIGEST_LENGTH * 2 + 1;
+		if (length == begin || length - begin > 8 || hash.charAt(begin) == '0')
+			return OTHER_HASH;
+		int partCount = 0;
+		for (int i = begin; i < length; ++i) {
+			char ch = hash.charAt(i);
+			if (ch < '0' || ch > '9')
+				return OTHER_HASH;
+			partCount = partCount * 10 + (ch - '0');
+		}
+		return partCount;
+	}
+}
@@ -0,0 +1,189 @@
+package it.geenee.cloud;
+
+import java.io.*;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Snapshot of a listing on local disk that is used to find the files that changed since the last listing. The snapshot
+ * contains path, hash, size and timestamp of each file in listing order and is compressed. The diff is a merge of the
+ * snapshot with the pages of a new listing, therefore the memory usage does not depend on the number of files
+ */
+public class ListingSnapshot {
+	static final int MAGIC = 0x67534e50;
+	static final int VERSION = 1;
+
+	/**
+	 * Receives the changes between the snapshot and the new listing in listing order
+	 */
+	public interface Changes {
+		void added(FileInfo fileInfo) throws Exception;
+		void removed(FileInfo fileInfo) throws Exception;
+		void modified(FileInfo oldFileInfo, FileInfo newFileInfo) throws Exception;
+	}
+
+	/**
+	 * Writes a snapshot to a temporary file that replaces the snapshot on close()
+	 */
+	public static class Writer implements Closeable {
+		final File path;
+		final File tempPath;
+		final DataOutputStream out;
+		boolean success = false;
+
+		public Writer(File path) throws IOException {
+			this.path = path;
+			this.tempPath = new File(path.getPath() + ".tmp");
+			this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(this.tempPath), 65536)));
+			this.out.writeInt(MAGIC);
+			this.out.writeInt(VERSION);
+		}
+
+		public void add(FileInfo fileInfo) throws IOException {
+			this.out.writeBoolean(true);
+			this.out.writeUTF(fileInfo.path);
+			this.out.writeUTF(fileInfo.hash == null ? "" : fileInfo.hash);
+			this.out.writeLong(fileInfo.size);
+			this.out.writeLong(fileInfo.timestamp);
+		}
+
+		/**
+		 * Mark the snapshot as complete so that it replaces the previous snapshot on close()
+		 */
+		public void commit() {
+			this.success = true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (this.success) {
+				this.out.writeBoolean(false);
+				this.out.close();
+				if (!this.tempPath.renameTo(this.path)) {
+					// rename does not replace an existing file on all platforms
+					this.path.delete();
+					if (!this.tempPath.renameTo(this.path))
+						throw new IOException("Unable to replace snapshot " + this.path);
+				}
+			} else {
+				// incomplete snapshot: keep previous snapshot
+				this.out.close();
+				this.tempPath.delete();
+			}
+		}
+	}
+
+	/**
+	 * Reads a snapshot
+	 */
+	public static class Reader implements Closeable {
+		final DataInputStream in;
+
+		/**
+		 * Constructor
+		 * @param path path of snapshot. If it does not exist, the snapshot is empty
+		 * @throws IOException
+		 */
+		public Reader(File path) throws IOException {
+			if (!path.exists()) {
+				this.in = null;
+				return;
+			}
+			this.in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(path), 65536)));
+			if (this.in.readInt() != MAGIC || this.in.readInt() != VERSION) {
+				this.in.close();
+				throw new IOException("Invalid snapshot " + path);
+			}
+		}
+
+		/**
+		 * Read next file info
+		 * @return file info or null at the end of the snapshot
+		 * @throws IOException
+		 */
+		public FileInfo next() throws IOException {
+			if (this.in == null || !this.in.readBoolean())
+				return null;
+			String path = this.in.readUTF();
+			String hash = this.in.readUTF();
+			long size = this.in.readLong();
+			long timestamp = this.in.readLong();
+			return new FileInfo(path, hash.isEmpty() ? null : hash, size, timestamp, null, true);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (this.in != null)
+				this.in.close();
+		}
+	}
+
+	/**
+	 * Compare the snapshot with a new listing, report the changes and replace the snapshot by the new listing. A file is
+	 * modified if its hash or size has changed. If the listing fails, the snapshot is left unchanged
+	 * @param listing new listing, e.g. from Storage.listPages() with ListMode.UNVERSIONED
+	 * @param snapshot path of snapshot, gets created if it does not exist (then all files are reported as added)
+	 * @param changes receives the changes
+	 * @throws Exception
+	 */
+	public static void diff(Storage.Listing<FileInfo> listing, File snapshot, Changes changes) throws Exception {
+		// the reader gets closed first so that the writer can replace the snapshot
+		try (Writer writer = new Writer(snapshot); Reader reader = new Reader(snapshot)) {
+			FileInfo oldFileInfo = reader.next();
+			List<FileInfo> page;
+			while ((page = listing.next()) != null) {
+				for (FileInfo newFileInfo : page) {
+					writer.add(newFileInfo);
+
+					// files in the snapshot that are before the new file were removed
+					while (oldFileInfo != null && compare(oldFileInfo.path, newFileInfo.path) < 0) {
+						changes.removed(oldFileInfo);
+						oldFileInfo = reader.next();
+					}
+
+					if (oldFileInfo != null && oldFileInfo.path.equals(newFileInfo.path)) {
+						// file is in the snapshot and in the new listing
+						if (!equals(oldFileInfo.hash, newFileInfo.hash) || oldFileInfo.size != newFileInfo.size)
+							changes.modified(oldFileInfo, newFileInfo);
+						oldFileInfo = reader.next();
+					} else {
+						changes.added(newFileInfo);
+					}
+				}
+			}
+
+			// remaining files in snapshot were removed
+			while (oldFileInfo != null) {
+				changes.removed(oldFileInfo);
+				oldFileInfo = reader.next();
+			}
+			writer.commit();
+		}
+	}
+
+	/**
+	 * Compare paths by unicode code points which is the same order as the UTF-8 byte order used by cloud storages
+	 */
+	public static int compare(String a, String b) {
+		int length = Math.min(a.length(), b.length());
+		for (int i = 0; i < length; ++i) {
+			char ca = a.charAt(i);
+			char cb = b.charAt(i);
+			if (ca != cb) {
+				// surrogates (0xd800 - 0xdfff) encode code points above 0xffff and therefore sort after all other chars
+				boolean sa = Character.isSurrogate(ca);
+				boolean sb = Character.isSurrogate(cb);
+				if (sa != sb)
+					return sa ? 1 : -1;
+				return ca - cb;
+			}
+		}
+		return a.length() - b.length();
+	}
+
+	static boolean equals(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
@@ -0,0 +1,154 @@
+package it.geenee.cloud;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * In-memory cache for results of list and get info operations. Entries expire after a time to live and the least
+ * recently used entries are evicted if the maximum number of entries is reached. Uploads and deletes that go through a
+ * storage object with the same cache invalidate the affected entries. The cache can be shared by multiple storage objects
+ * by setting it in the configuration (Cloud.configure().metadataCache(cache))
+ */
+public class MetadataCache {
+
+	static class Entry {
+		// full path of the file or prefix of the listing
+		final String path;
+
+		// true if path is a prefix, i.e. the entry depends on all files that start with path
+		final boolean prefix;
+
+		final Object value;
+
+		// time when the entry expires in milliseconds
+		final long expires;
+
+		Entry(String path, boolean prefix, Object value, long expires) {
+			this.path = path;
+			this.prefix = prefix;
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+
+	// time to live of entries in milliseconds
+	final long timeToLive;
+
+	// maximum number of entries
+	final int maxEntries;
+
+	// entries in access order
+	final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, MetadataCache.Entry> eldest) {
+			return size() > MetadataCache.this.maxEntries;
+		}
+	};
+
+	// incremented on each invalidation so that results of requests that started before are not added
+	long generation = 0;
+
+	// statistics
+	final AtomicLong hitCount = new AtomicLong();
+	final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Constructor
+	 * @param timeToLive time to live of entries in milliseconds
+	 * @param maxEntries maximum number of entries
+	 */
+	public MetadataCache(long timeToLive, int maxEntries) {
+		this.timeToLive = timeToLive;
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * Get the current generation. Pass it to put() when the result of a request that is started now becomes available
+	 * @return generation
+	 */
+	public synchronized long getGeneration() {
+		return this.generation;
+	}
+
+	/**
+	 * Get a value from the cache
+	 * @param key key of the value, e.g. operation and path
+	 * @return value or null if not found or expired
+	 */
+	public synchronized Object get(String key) {
+		Entry entry = this.entries.get(key);
+		if (entry != null && entry.expires - System.currentTimeMillis() <= 0) {
+			this.entries.remove(key);
+			entry = null;
+		}
+		if (entry == null) {
+			this.missCount.incrementAndGet();
+			return null;
+		}
+		this.hitCount.incrementAndGet();
+		return entry.value;
+	}
+
+	/**
+	 * Put a value into the cache
+	 * @param key key of the value
+	 * @param path full path of the file or prefix that the value depends on
+	 * @param prefix true if the value depends on all files that start with path, e.g. a listing
+	 * @param value value to cache, must not be modified afterwards
+	 * @param generation generation obtained by getGeneration() when the request was started. The value is not added if
+	 * the cache was invalidated in the meantime as it may be outdated
+	 */
+	public synchronized void put(String key, String path, boolean prefix, Object value, long generation) {
+		if (generation != this.generation)
+			return;
+		this.entries.put(key, new Entry(path, prefix, value, System.currentTimeMillis() + this.timeToLive));
+	}
+
+	/**
+	 * Remove all entries that depend on the file with the given path
+	 * @param path full path of a file that was uploaded or deleted
+	 */
+	public synchronized void invalidate(String path) {
+		++this.generation;
+		Iterator<Entry> it = this.entries.values().iterator();
+		while (it.hasNext()) {
+			Entry entry = it.next();
+			if (entry.prefix ? path.startsWith(entry.path) : path.equals(entry.path))
+				it.remove();
+		}
+	}
+
+	/**
+	 * Remove all entries
+	 */
+	public synchronized void clear() {
+		++this.generation;
+		this.entries.clear();
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append('{');
+		Cloud.append(b, "size", size());
+		Cloud.append(b, "hitCount", getHitCount());
+		Cloud.append(b, "missCount", getMissCount());
+		b.append('}');
+		return b.toString();
+	}
+}
@@ -0,0 +1,37 @@
+package it.geenee.cloud;
+
+import java.util.Map;
+
+/**
+ * Result of mirroring a remote directory to a local directory
+ */
+public class MirrorReport {
+	// number of files that were already up to date
+	public final long unchanged;
+
+	// number of files that were downloaded and their total size
+	public final long downloaded;
+	public final long downloadedBytes;
+
+	// files that could not be mirrored, path relative to the directory -> cause
+	public final Map<String, Throwable> failures;
+
+
+	public MirrorReport(long unchanged, long downloaded, long downloadedBytes, Map<String, Throwable> failures) {
+		this.unchanged = unchanged;
+		this.downloaded = downloaded;
+		this.downloadedBytes = downloadedBytes;
+		this.failures = failures;
+	}
+
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append('{');
+		Cloud.append(b, "unchanged", this.unchanged);
+		Cloud.append(b, "downloaded", this.downloaded);
+		Cloud.append(b, "downloadedBytes", this.downloadedBytes);
+		Cloud.append(b, "failures", this.failures.size());
+		b.append('}');
+		return b.toString();
+	}
+}
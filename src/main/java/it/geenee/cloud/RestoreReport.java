@@ -0,0 +1,44 @@
+package it.geenee.cloud;
+
+import java.util.Map;
+
+/**
+ * Result of restoring the files that have a given remote path as prefix to their state at a point in time
+ */
+public class RestoreReport {
+	// point in time the files were restored to, the number of milliseconds since January 1, 1970, 00:00:00 GMT
+	public final long timestamp;
+
+	// number of files whose latest version already was the version at the point in time
+	public final long unchanged;
+
+	// number of files that were restored by copying the version at the point in time
+	public final long copied;
+
+	// number of files that were deleted because they did not exist at the point in time
+	public final long deleted;
+
+	// files that could not be restored, path -> cause
+	public final Map<String, Throwable> failures;
+
+
+	public RestoreReport(long timestamp, long unchanged, long copied, long deleted, Map<String, Throwable> failures) {
+		this.timestamp = timestamp;
+		this.unchanged = unchanged;
+		this.copied = copied;
+		this.deleted = deleted;
+		this.failures = failures;
+	}
+
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append('{');
+		Cloud.append(b, "timestamp", this.timestamp);
+		Cloud.append(b, "unchanged", this.unchanged);
+		Cloud.append(b, "copied", this.copied);
+		Cloud.append(b, "deleted", this.deleted);
+		Cloud.append(b, "failures", this.failures.size());
+		b.append('}');
+		return b.toString();
+	}
+}
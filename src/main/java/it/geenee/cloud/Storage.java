@@ -2,7 +2,9 @@ package it.geenee.cloud;
 
 import io.netty.util.concurrent.Future;
 
+import java.io.File;
 import java.nio.channels.FileChannel;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -34,11 +36,41 @@ public interface Storage {
 	 * @param version version to download, null for current version
 	 * @return
 	 */
-	Transfer startDownload(FileChannel file, String remotePath, String version);
+	default Transfer startDownload(FileChannel file, String remotePath, String version) {
+		return startDownload(file, remotePath, version, null);
+	}
 	default FileInfo download(FileChannel file, String remotePath, String version) throws InterruptedException, ExecutionException {
 		return startDownload(file, remotePath, version).get();
 	}
 
+	/**
+	 * Download a file only if it differs from the local file
+	 * @param file file to download to
+	 * @param remotePath path to file in cloud storage
+	 * @param version version to download, null for current version
+	 * @param hash known hash of the local file (e.g. from hash()), null for unconditional download. If the remote file has
+	 * the same hash, the transfer completes immediately with the remote file info and the local file is left unchanged
+	 * @return
+	 */
+	Transfer startDownload(FileChannel file, String remotePath, String version, String hash);
+	default FileInfo download(FileChannel file, String remotePath, String version, String hash) throws InterruptedException, ExecutionException {
+		return startDownload(file, remotePath, version, hash).get();
+	}
+
+	/**
+	 * Download a file and record completed parts in a journal so that an interrupted download can be resumed
+	 * @param file file to download to. Open without truncating (e.g. RandomAccessFile with mode "rw") to keep already downloaded parts
+	 * @param journal journal file next to the downloaded file, e.g. "foo.bin.journal". If it exists and the remote file did
+	 * not change, only the missing parts are downloaded. It is deleted when the download succeeds
+	 * @param remotePath path to file in cloud storage
+	 * @param version version to download, null for current version
+	 * @return
+	 */
+	Transfer startResumableDownload(FileChannel file, File journal, String remotePath, String version);
+	default FileInfo resumableDownload(FileChannel file, File journal, String remotePath, String version) throws InterruptedException, ExecutionException {
+		return startResumableDownload(file, journal, remotePath, version).get();
+	}
+
 	/**
 	 * Upload a file
 	 * @param file file to upload from
@@ -50,6 +82,57 @@ public interface Storage {
 		return startUpload(file, remotePath).get();
 	}
 
+	/**
+	 * Upload a file only if the remote file differs. The hash of the local file is calculated (see hash()) and compared
+	 * with the hash of the remote file using a conditional HEAD request. If they are identical, the transfer completes
+	 * with the info of the remote file without sending any data
+	 * @param file file to upload from
+	 * @param remotePath path to file in cloud storage
+	 * @param skipIdentical true to skip the upload if the remote file is identical, false to always upload
+	 * @return transfer
+	 */
+	Transfer startUpload(FileChannel file, String remotePath, boolean skipIdentical);
+	default FileInfo upload(FileChannel file, String remotePath, boolean skipIdentical) throws InterruptedException, ExecutionException {
+		return startUpload(file, remotePath, skipIdentical).get();
+	}
+
+	/**
+	 * Upload a file only if it differs from a remote file with known hash, e.g. from listHashes(). No request is needed
+	 * to find out that the remote file is identical
+	 * @param file file to upload from
+	 * @param remotePath path to file in cloud storage
+	 * @param remoteHash hash of the remote file, null if the remote file does not exist
+	 * @return transfer
+	 */
+	Transfer startUpload(FileChannel file, String remotePath, String remoteHash);
+	default FileInfo upload(FileChannel file, String remotePath, String remoteHash) throws InterruptedException, ExecutionException {
+		return startUpload(file, remotePath, remoteHash).get();
+	}
+
+	/**
+	 * Upload local files and record the progress in a journal so that the uploads can be resumed after a crash. The
+	 * journal records the queued files, the upload ids of multipart uploads and the ETags of uploaded parts. Unfinished
+	 * uploads of a previous run are resumed first and only upload the missing parts
+	 * @param files files to upload, remote path -> local file. May be empty to only resume unfinished uploads
+	 * @param journal journal file, e.g. "uploads.journal". It is deleted when all uploads succeeded
+	 * @return report with uploaded files and files that could not be uploaded. Failed uploads stay in the journal
+	 */
+	Future<BatchUploadReport> startJournaledUpload(Map<String, File> files, File journal);
+	default BatchUploadReport journaledUpload(Map<String, File> files, File journal) throws InterruptedException, ExecutionException {
+		return startJournaledUpload(files, journal).get();
+	}
+
+	/**
+	 * Upload many small files, e.g. a few KB each. The files are uploaded over up to configuration.channelCount
+	 * persistent connections with one request after the other, which is much faster than uploading the files one by one
+	 * @param files remote path -> content of file
+	 * @return file infos of the uploaded files and the files that could not be uploaded with the cause
+	 */
+	Future<BatchUploadReport> startUpload(Map<String, byte[]> files);
+	default BatchUploadReport upload(Map<String, byte[]> files) throws InterruptedException, ExecutionException {
+		return startUpload(files).get();
+	}
+
 	/**
 	 * Get file info for given path
 	 * @param remotePath
@@ -61,6 +144,18 @@ public interface Storage {
 		return startGetInfo(remotePath, version).get();
 	}
 
+	/**
+	 * Get file infos for many files that are not necessarily in the same directory. Uses up to
+	 * configuration.channelCount persistent connections and lists directories that contain many of the files instead of
+	 * requesting each file
+	 * @param remotePaths paths of the files
+	 * @return remote path -> file info of latest version in the order of the given paths, null if the file does not exist
+	 */
+	Future<Map<String, FileInfo>> startGetInfo(Collection<String> remotePaths);
+	default Map<String, FileInfo> getInfo(Collection<String> remotePaths) throws InterruptedException, ExecutionException {
+		return startGetInfo(remotePaths).get();
+	}
+
 	/**
 	 * Request a list of all files that have the given remote path as prefix
 	 * @param remotePath
@@ -99,11 +194,124 @@ public interface Storage {
 		return this.startList(remotePath, mode).get();
 	}
 
+	/**
+	 * Request a list of all files that have the given remote path as prefix in compact form. Use instead of startList() for
+	 * prefixes with millions of files as it needs only a fraction of the memory
+	 * @param remotePath
+	 * @param mode list mode, one member of ListMode enum
+	 * @return compact list of file infos
+	 */
+	Future<FileList> startFileList(String remotePath, ListMode mode);
+	default FileList fileList(String remotePath, ListMode mode) throws InterruptedException, ExecutionException {
+		return startFileList(remotePath, mode).get();
+	}
+
+	/**
+	 * Request one level of the directory tree, i.e. the files and sub-directories directly below the given remote path.
+	 * Files in sub-directories are not listed, therefore use this method to walk the directory tree level by level
+	 * @param remotePath path of directory ending with '/', e.g. "bucket/foo/"
+	 * @return files and sub-directories
+	 */
+	Future<DirectoryInfo> startListDirectory(String remotePath);
+	default DirectoryInfo listDirectory(String remotePath) throws InterruptedException, ExecutionException {
+		return startListDirectory(remotePath).get();
+	}
+
+	/**
+	 * Request a list of all files that have the given remote path as prefix. The key space is split into ranges that are
+	 * listed in parallel using up to configuration.channelCount channels, which is much faster than startList() for
+	 * prefixes with many files
+	 * @param remotePath
+	 * @return list of file infos without version information in the same order as startList() with ListMode.UNVERSIONED
+	 */
+	Future<FileInfo[]> startParallelList(String remotePath);
+	default FileInfo[] parallelList(String remotePath) throws InterruptedException, ExecutionException {
+		return startParallelList(remotePath).get();
+	}
+
+	interface Listing<T> {
+		/**
+		 * Request the next page of the listing. The next page is only requested when this method is called, therefore the
+		 * consumer controls the pace and only one page is held in memory. If a page fails, calling it again retries the same page
+		 * @return future for the entries of the next page, null if there are no more pages
+		 * @throws IllegalStateException if the previous page is still pending
+		 */
+		Future<List<T>> startNext();
+		default List<T> next() throws InterruptedException, ExecutionException {
+			return startNext().get();
+		}
+	}
+
+	/**
+	 * Get a listing of all files that have the given remote path as prefix page by page. Use for large prefixes where the
+	 * complete list does not fit into memory, e.g. like this: while ((page = listing.next()) != null) {...}
+	 * @param remotePath
+	 * @param mode list mode, one member of ListMode enum
+	 * @return listing object to get the pages
+	 */
+	Listing<FileInfo> listPages(String remotePath, ListMode mode);
+
+	/**
+	 * Find the files that changed since the last call with the same snapshot. Lists all files that have the given remote
+	 * path as prefix page by page and compares them with the snapshot, then the snapshot is replaced by the new listing.
+	 * Blocks until done
+	 * @param remotePath
+	 * @param snapshot path of snapshot on local disk, gets created if it does not exist (then all files are reported as added)
+	 * @param changes receives the added, removed and modified files
+	 * @throws Exception
+	 */
+	default void listChanges(String remotePath, File snapshot, ListingSnapshot.Changes changes) throws Exception {
+		ListingSnapshot.diff(listPages(remotePath, ListMode.UNVERSIONED), snapshot, changes);
+	}
+
+	/**
+	 * Restore all files that have the given remote path as prefix to their state at a point in time. Requires versioning.
+	 * The versions are listed page by page and for each file the version that was the latest at the point in time is
+	 * selected. If it is not the latest version anymore, it is copied on the server side to become the latest version.
+	 * Files that did not exist or were deleted at the point in time get deleted. Up to configuration.channelCount
+	 * copies and deletes run in parallel, the memory usage does not depend on the number of versions
+	 * @param remotePath
+	 * @param timestamp point in time, the number of milliseconds since January 1, 1970, 00:00:00 GMT
+	 * @return report with the number of unchanged, copied and deleted files and the files that failed
+	 */
+	Future<RestoreReport> startRestore(String remotePath, long timestamp);
+	default RestoreReport restore(String remotePath, long timestamp) throws InterruptedException, ExecutionException {
+		return startRestore(remotePath, timestamp).get();
+	}
+
+	/**
+	 * Synchronize a local directory tree to the cloud storage, i.e. upload all files that do not exist remotely or that
+	 * have a different hash. Walks the local tree and hashes files in parallel, uploads using up to
+	 * configuration.channelCount parallel uploads. Blocks until done
+	 * @param directory local directory
+	 * @param remotePath remote directory, e.g. "bucket/foo/"
+	 * @param delete true to delete remote files that do not exist locally
+	 * @return report with the number of unchanged, uploaded and deleted files and the files that failed
+	 * @throws Exception if the local directory or the remote listing can not be read
+	 */
+	default SyncReport sync(File directory, String remotePath, boolean delete) throws Exception {
+		return new DirectorySync(this, directory, remotePath, delete, Runtime.getRuntime().availableProcessors()).run();
+	}
+
+	/**
+	 * Mirror a remote directory to a local directory, i.e. download all files that do not exist locally or that have a
+	 * different hash. Hashes files in parallel, small files are downloaded concurrently and large files in parallel
+	 * parts using a shared budget of configuration.channelCount connections. Blocks until done
+	 * @param remotePath remote directory, e.g. "bucket/foo/"
+	 * @param directory local directory, gets created if it does not exist
+	 * @return report with the number of unchanged and downloaded files and the files that failed
+	 * @throws Exception if the remote listing can not be read
+	 */
+	default MirrorReport mirror(String remotePath, File directory) throws Exception {
+		return new DirectoryMirror(this, remotePath, directory, Runtime.getRuntime().availableProcessors()).run();
+	}
+
 	/**
 	 * Get a list of all files that have the given remote path as prefix. The result is returned as a map from file path to file hash which is convenient
-	 * for synchronizing a local directory with a remote directory
+	 * for synchronizing a local directory with a remote directory: look up the path of each local file, compare the hash
+	 * with the hash of the local file and remove the entry. The remaining entries are files that do not exist locally
 	 * @param remotePath
-	 * @return map of file path to file hash
+	 * @return map of file path to file hash, a compact FileHashMap that also supports millions of files
 	 */
 	Future<Map<String, String>> startListHashes(String remotePath);
 	default Map<String, String> listHashes(String remotePath) throws InterruptedException, ExecutionException {
@@ -131,8 +339,44 @@ public interface Storage {
 		startDelete(remotePath, version).get();
 	}
 
+	/**
+	 * Delete many files on the cloud storage. Uses one request for up to 1000 files and up to configuration.channelCount
+	 * requests in parallel, which is much faster than deleting the files one by one
+	 * @param remotePaths paths of the files to delete
+	 * @return the paths of the files that could not be deleted with the cause, empty if all files were deleted
+	 */
+	Future<Map<String, Throwable>> startDelete(Collection<String> remotePaths);
+	default Map<String, Throwable> delete(Collection<String> remotePaths) throws InterruptedException, ExecutionException {
+		return startDelete(remotePaths).get();
+	}
+
+	/**
+	 * Delete many files or versions of files on the cloud storage, e.g. the result of list(). Uses one request for up
+	 * to 1000 files and up to configuration.channelCount requests in parallel
+	 * @param remotePath remote path the paths of the file infos are relative to
+	 * @param fileInfos files to delete. If a file info has a version, only this version is deleted
+	 * @return the file infos that could not be deleted with the cause, empty if all files were deleted
+	 */
+	Future<Map<FileInfo, Throwable>> startDeleteFiles(String remotePath, FileInfo[] fileInfos);
+	default Map<FileInfo, Throwable> deleteFiles(String remotePath, FileInfo[] fileInfos) throws InterruptedException, ExecutionException {
+		return startDeleteFiles(remotePath, fileInfos).get();
+	}
+
 	Future<Void> startDeleteUpload(String remotePath, String uploadId);
 	default void deleteUpload(String remotePath, String uploadId) throws InterruptedException, ExecutionException {
 		startDeleteUpload(remotePath, uploadId).get();
 	}
+
+	/**
+	 * Delete all incomplete uploads for files that have the given remote path as prefix and that were started before a
+	 * point in time, e.g. to clean up abandoned uploads. The uploads are listed page by page and deleted as they are
+	 * found with up to configuration.channelCount requests in parallel
+	 * @param remotePath
+	 * @param timestamp point in time, the number of milliseconds since January 1, 1970, 00:00:00 GMT
+	 * @return report with the number of kept and deleted uploads and the uploads that failed
+	 */
+	Future<UploadCleanupReport> startDeleteUploads(String remotePath, long timestamp);
+	default UploadCleanupReport deleteUploads(String remotePath, long timestamp) throws InterruptedException, ExecutionException {
+		return startDeleteUploads(remotePath, timestamp).get();
+	}
 }
@@ -0,0 +1,42 @@
+package it.geenee.cloud;
+
+import java.util.Map;
+
+/**
+ * Result of synchronizing a local directory to a cloud storage
+ */
+public class SyncReport {
+	// number of files that were already up to date
+	public final long unchanged;
+
+	// number of files that were uploaded and their total size
+	public final long uploaded;
+	public final long uploadedBytes;
+
+	// number of remote files that were deleted because they do not exist locally
+	public final long deleted;
+
+	// files that could not be synchronized, path relative to the directory -> cause
+	public final Map<String, Throwable> failures;
+
+
+	public SyncReport(long unchanged, long uploaded, long uploadedBytes, long deleted, Map<String, Throwable> failures) {
+		this.unchanged = unchanged;
+		this.uploaded = uploaded;
+		this.uploadedBytes = uploadedBytes;
+		this.deleted = deleted;
+		this.failures = failures;
+	}
+
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append('{');
+		Cloud.append(b, "unchanged", this.unchanged);
+		Cloud.append(b, "uploaded", this.uploaded);
+		Cloud.append(b, "uploadedBytes", this.uploadedBytes);
+		Cloud.append(b, "deleted", this.deleted);
+		Cloud.append(b, "failures", this.failures.size());
+		b.append('}');
+		return b.toString();
+	}
+}
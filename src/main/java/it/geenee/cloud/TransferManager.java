@@ -0,0 +1,224 @@
+package it.geenee.cloud;
+
+import java.util.*;
+
+
+/**
+ * Schedules the parts of all transfers of storages that are configured with this transfer manager (e.g.
+ * cloud.getStorage(Cloud.configure().transferManager(manager).priority(-1))). Instead of each transfer starting its own
+ * parts, a global number of parts is in progress at the same time and each free slot goes to the transfer with the
+ * highest priority, transfers with the same priority are served in the order they were started. Therefore a large
+ * background upload does not delay a small download with higher priority that is started later. Whole transfers can
+ * be paused and resumed
+ */
+public class TransferManager {
+
+	/**
+	 * Implemented by transfers that get scheduled by a transfer manager
+	 */
+	public interface Schedulable {
+		/**
+		 * Start the next queued part if there is one
+		 * @return true if a part was started, false if no part is left to start
+		 */
+		boolean startNextPart();
+	}
+
+	class Entry {
+		final Schedulable transfer;
+		int priority;
+		final long sequence;
+
+		// number of parts in progress and maximum for this transfer
+		int activeCount = 0;
+		final int maxActiveCount;
+
+		boolean paused = false;
+
+		// true when the transfer had no more parts to start, cleared when a part is done as it may requeue or split parts
+		boolean exhausted = false;
+
+		Entry(Schedulable transfer, int priority, long sequence, int maxActiveCount) {
+			this.transfer = transfer;
+			this.priority = priority;
+			this.sequence = sequence;
+			this.maxActiveCount = maxActiveCount;
+		}
+
+		boolean isReady() {
+			return !this.paused && !this.exhausted && this.activeCount < this.maxActiveCount;
+		}
+	}
+
+	// maximum number of parts in progress
+	final int partCount;
+
+	// number of parts in progress
+	int activeCount = 0;
+
+	final Map<Schedulable, Entry> entries = new HashMap<>();
+
+	// transfers that can start a part, highest priority first, then in the order they were started
+	final TreeSet<Entry> ready = new TreeSet<>((a, b) -> a.priority != b.priority ? Integer.compare(b.priority, a.priority)
+			: Long.compare(a.sequence, b.sequence));
+	long sequence = 0;
+
+
+	/**
+	 * Constructor
+	 * @param partCount maximum number of parts of all transfers that are in progress at the same time
+	 */
+	public TransferManager(int partCount) {
+		this.partCount = partCount;
+	}
+
+	/**
+	 * Add a transfer that has parts to start. Gets called by the transfer
+	 * @param transfer transfer
+	 * @param priority priority of the transfer, higher values get served first
+	 * @param maxActiveCount maximum number of parts of this transfer in progress at the same time, e.g. configuration.channelCount
+	 */
+	public void add(Schedulable transfer, int priority, int maxActiveCount) {
+		synchronized (this) {
+			Entry entry = new Entry(transfer, priority, this.sequence++, maxActiveCount);
+			this.entries.put(transfer, entry);
+			this.ready.add(entry);
+		}
+		dispatch();
+	}
+
+	/**
+	 * Release the slot of a part that is done so that the next part can start. Gets called by the transfer
+	 * @param transfer transfer
+	 */
+	public void release(Schedulable transfer) {
+		synchronized (this) {
+			Entry entry = this.entries.get(transfer);
+			if (entry != null && entry.activeCount > 0) {
+				entry.exhausted = false;
+				--entry.activeCount;
+				--this.activeCount;
+				update(entry);
+			}
+		}
+		dispatch();
+	}
+
+	/**
+	 * Remove a transfer that is done (successful, failed or cancelled) and release the slots of its parts. Gets called by
+	 * the transfer
+	 * @param transfer transfer
+	 */
+	public void remove(Schedulable transfer) {
+		synchronized (this) {
+			Entry entry = this.entries.remove(transfer);
+			if (entry == null)
+				return;
+			this.ready.remove(entry);
+			this.activeCount -= entry.activeCount;
+		}
+		dispatch();
+	}
+
+	/**
+	 * Pause a transfer. Parts in progress are completed, but no new parts are started until resume() is called
+	 * @param transfer transfer of a storage that uses this transfer manager
+	 * @return true if the transfer was paused, false if it is not scheduled by this transfer manager (e.g. already done)
+	 */
+	public synchronized boolean pause(Transfer transfer) {
+		Entry entry = this.entries.get(transfer);
+		if (entry == null)
+			return false;
+		entry.paused = true;
+		update(entry);
+		return true;
+	}
+
+	/**
+	 * Resume a paused transfer
+	 * @param transfer transfer of a storage that uses this transfer manager
+	 * @return true if the transfer was resumed, false if it is not scheduled by this transfer manager
+	 */
+	public boolean resume(Transfer transfer) {
+		synchronized (this) {
+			Entry entry = this.entries.get(transfer);
+			if (entry == null)
+				return false;
+			entry.paused = false;
+			update(entry);
+		}
+		dispatch();
+		return true;
+	}
+
+	/**
+	 * Change the priority of a transfer
+	 * @param transfer transfer of a storage that uses this transfer manager
+	 * @param priority new priority, higher values get served first
+	 * @return true if the priority was changed, false if the transfer is not scheduled by this transfer manager
+	 */
+	public synchronized boolean setPriority(Transfer transfer, int priority) {
+		Entry entry = this.entries.get(transfer);
+		if (entry == null)
+			return false;
+
+		// reinsert as the position in the ready set depends on the priority
+		boolean ready = this.ready.remove(entry);
+		entry.priority = priority;
+		if (ready)
+			this.ready.add(entry);
+		return true;
+	}
+
+	/**
+	 * Get the number of parts that are in progress
+	 */
+	public synchronized int getActiveCount() {
+		return this.activeCount;
+	}
+
+	/**
+	 * Get the number of transfers that are scheduled
+	 */
+	public synchronized int getTransferCount() {
+		return this.entries.size();
+	}
+
+	// helpers
+
+	// add to or remove from the ready set according to the state of the entry
+	void update(Entry entry) {
+		if (entry.isReady())
+			this.ready.add(entry);
+		else
+			this.ready.remove(entry);
+	}
+
+	// start parts while slots are free. The transfers are called outside of the lock because they call the transfer
+	// manager while holding their own locks
+	void dispatch() {
+		while (true) {
+			Entry entry;
+			synchronized (this) {
+				if (this.activeCount >= this.partCount || this.ready.isEmpty())
+					return;
+				entry = this.ready.first();
+				++entry.activeCount;
+				++this.activeCount;
+				update(entry);
+			}
+
+			if (!entry.transfer.startNextPart()) {
+				// no part left to start: release the slot and skip the transfer until one of its parts is done
+				synchronized (this) {
+					entry.exhausted = true;
+					if (this.entries.get(entry.transfer) == entry) {
+						--entry.activeCount;
+						--this.activeCount;
+						update(entry);
+					}
+				}
+			}
+		}
+	}
+}
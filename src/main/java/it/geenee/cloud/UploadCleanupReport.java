@@ -0,0 +1,39 @@
+package it.geenee.cloud;
+
+import java.util.Map;
+
+/**
+ * Result of deleting the incomplete uploads that were started before a point in time
+ */
+public class UploadCleanupReport {
+	// point in time, the number of milliseconds since January 1, 1970, 00:00:00 GMT
+	public final long timestamp;
+
+	// number of incomplete uploads that were started at or after the point in time and were kept
+	public final long kept;
+
+	// number of incomplete uploads that were deleted
+	public final long deleted;
+
+	// incomplete uploads that could not be deleted with the cause
+	public final Map<UploadInfo, Throwable> failures;
+
+
+	public UploadCleanupReport(long timestamp, long kept, long deleted, Map<UploadInfo, Throwable> failures) {
+		this.timestamp = timestamp;
+		this.kept = kept;
+		this.deleted = deleted;
+		this.failures = failures;
+	}
+
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		b.append('{');
+		Cloud.append(b, "timestamp", this.timestamp);
+		Cloud.append(b, "kept", this.kept);
+		Cloud.append(b, "deleted", this.deleted);
+		Cloud.append(b, "failures", this.failures.size());
+		b.append('}');
+		return b.toString();
+	}
+}
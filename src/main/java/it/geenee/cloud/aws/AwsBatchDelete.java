@@ -0,0 +1,121 @@
+package it.geenee.cloud.aws;
+
+import io.netty.util.concurrent.Future;
+import it.geenee.cloud.MetadataCache;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+
+
+/**
+ * Deletes many files using multi-object delete requests of up to 1000 files each. Consecutive files in the same bucket
+ * are grouped into one request and the requests run in parallel, see AwsParallelActions. The result contains the files
+ * that could not be deleted
+ * @param <K> type of the items that identify the files, e.g. remote path or file info
+ */
+class AwsBatchDelete<K> extends AwsParallelActions<Map<K, Throwable>, AwsBatchDelete<K>.Batch, DeleteResult> {
+	final AwsStorage storage;
+	final Iterator<K> items;
+
+	// get full path including bucket (e.g. "bucket/foo/bar") and version (null for current version) of an item
+	final Function<K, String> pathOf;
+	final Function<K, String> versionOf;
+
+	// files of one request
+	class Batch {
+		final String bucket;
+		final List<K> items = new ArrayList<>();
+		final Delete delete = new Delete();
+
+		Batch(String bucket) {
+			this.bucket = bucket;
+		}
+	}
+
+	// next item that did not fit into the previous batch, null if none
+	K item;
+
+	final Map<K, Throwable> failures = new LinkedHashMap<>();
+
+
+	AwsBatchDelete(AwsStorage storage, Collection<K> items, Function<K, String> pathOf, Function<K, String> versionOf) {
+		super(storage);
+		this.storage = storage;
+		this.items = items.iterator();
+		this.pathOf = pathOf;
+		this.versionOf = versionOf;
+		schedule();
+	}
+
+	@Override
+	protected Future<DeleteResult> start(Batch batch) {
+		return new AwsDeleteObjects(this.cloud, this.configuration, this.host, batch.bucket, batch.delete);
+	}
+
+	@Override
+	protected Map<K, Throwable> getResult() {
+		return this.failures;
+	}
+
+	// collect consecutive items in the same bucket, returns null if there are no more items
+	@Override
+	protected Batch next() {
+		Batch batch = null;
+		while (this.item != null || this.items.hasNext()) {
+			K item = this.item != null ? this.item : this.items.next();
+			this.item = null;
+
+			String path = this.pathOf.apply(item);
+			int pos = path.indexOf('/');
+			if (pos <= 0 || pos == path.length() - 1) {
+				this.failures.put(item, new IllegalArgumentException("Not a file: " + path));
+				continue;
+			}
+			String bucket = path.substring(0, pos);
+			if (batch == null) {
+				batch = new Batch(bucket);
+			} else if (!batch.bucket.equals(bucket) || batch.items.size() == Delete.MAX_OBJECTS) {
+				// item belongs to the next batch
+				this.item = item;
+				break;
+			}
+			batch.items.add(item);
+			batch.delete.addObject(path.substring(pos + 1), this.versionOf.apply(item));
+		}
+		return batch;
+	}
+
+	@Override
+	protected void done(Batch batch, Future<DeleteResult> future) {
+		if (future.isSuccess()) {
+			// report files that could not be deleted. Errors are rare, therefore the lookup is only built when needed
+			List<DeleteResult.Failure> errors = future.getNow().errors;
+			if (errors != null) {
+				Map<String, K> items = new HashMap<>();
+				for (int i = 0; i < batch.items.size(); ++i) {
+					Delete.ObjectIdentifier object = batch.delete.objects.get(i);
+					items.put(object.key + '\n' + object.versionId, batch.items.get(i));
+				}
+				for (DeleteResult.Failure error : errors) {
+					K item = items.get(error.key + '\n' + error.versionId);
+					if (item != null)
+						this.failures.put(item, new IOException("Delete failed: " + error.code + ", " + error.message));
+				}
+			}
+		} else {
+			// the request failed: none of its files is known to be deleted
+			for (K item : batch.items) {
+				this.failures.put(item, future.cause());
+			}
+		}
+
+		// invalidate cached results that depend on the files
+		MetadataCache metadataCache = this.configuration.metadataCache;
+		if (metadataCache != null) {
+			for (Delete.ObjectIdentifier object : batch.delete.objects) {
+				metadataCache.invalidate(batch.bucket + '/' + object.key);
+			}
+		}
+	}
+}
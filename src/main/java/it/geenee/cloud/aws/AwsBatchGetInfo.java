@@ -0,0 +1,224 @@
+package it.geenee.cloud.aws;
+
+import io.netty.handler.codec.http.*;
+import io.netty.util.concurrent.Future;
+import it.geenee.cloud.FileInfo;
+import it.geenee.cloud.ListingSnapshot;
+import it.geenee.cloud.http.HttpCloud;
+
+import java.util.*;
+
+
+/**
+ * Gets file infos for many files using HEAD requests over persistent connections. If many of the files are in the same
+ * directory, the directory is listed instead, starting at the first requested file. The listing continues only while
+ * each page resolves enough of the requested files, the remaining files of the directory fall back to HEAD requests.
+ * Files that do not exist have null as file info. File infos obtained from a listing have no version
+ * http://docs.aws.amazon.com/AmazonS3/latest/API/RESTObjectHEAD.html
+ * http://docs.aws.amazon.com/AmazonS3/latest/API/v2-RESTBucketGET.html
+ */
+class AwsBatchGetInfo extends AwsBatchRequest<Map<String, FileInfo>, String> {
+	// minimum number of requested files in a directory to list the directory instead of using HEAD requests. A listing
+	// is only continued while each page resolves at least this number of files
+	static final int LIST_THRESHOLD = 16;
+
+	final AwsStorage storage;
+
+	// requested files -> file info, null if not found (yet)
+	final Map<String, FileInfo> fileInfos = new LinkedHashMap<>();
+
+	// requested files of a directory that get resolved by listing the directory
+	class Group {
+		final String urlPath;
+
+		// remote paths and keys, sorted by key
+		final String[] remotePaths;
+		final String[] keys;
+
+		// index of first file that is not resolved yet
+		int index = 0;
+
+		Group(String directory, List<String[]> files) {
+			files.sort((a, b) -> ListingSnapshot.compare(a[1], b[1]));
+			this.remotePaths = new String[files.size()];
+			this.keys = new String[files.size()];
+			for (int i = 0; i < this.keys.length; ++i) {
+				this.remotePaths[i] = files.get(i)[0];
+				this.keys[i] = files.get(i)[1];
+			}
+
+			// start listing right before the first file
+			String urlPath = HttpCloud.addQuery(storage.encodePathPrefix(directory), "list-type", 2);
+			String first = this.keys[0];
+			String startAfter = first.substring(0, first.offsetByCodePoints(first.length(), -1));
+			if (!startAfter.isEmpty())
+				urlPath = HttpCloud.addQuery(urlPath, "start-after", startAfter);
+			this.urlPath = urlPath;
+		}
+	}
+
+	// groups that wait for listing and number of listings in progress
+	final Queue<Group> groups = new ArrayDeque<>();
+	int listingCount = 0;
+
+
+	AwsBatchGetInfo(AwsStorage storage, Collection<String> remotePaths) {
+		super(storage);
+		this.storage = storage;
+		String prefix = this.configuration.prefix;
+
+		// group files by directory, directory -> list of remote path and key
+		begin();
+		Map<String, List<String[]>> directories = new LinkedHashMap<>();
+		for (String remotePath : remotePaths) {
+			if (this.fileInfos.containsKey(remotePath))
+				continue;
+			this.fileInfos.put(remotePath, null);
+
+			String path = prefix + remotePath;
+			int bucketEnd = path.indexOf('/');
+			int nameLength = path.length() - (path.lastIndexOf('/') + 1);
+			if (bucketEnd == -1 || nameLength == 0 || nameLength > remotePath.length()) {
+				add(remotePath);
+				continue;
+			}
+			String directory = remotePath.substring(0, remotePath.length() - nameLength);
+			directories.computeIfAbsent(directory, d -> new ArrayList<>()).add(new String[] {remotePath, path.substring(bucketEnd + 1)});
+		}
+		for (Map.Entry<String, List<String[]>> entry : directories.entrySet()) {
+			List<String[]> files = entry.getValue();
+			if (files.size() >= LIST_THRESHOLD) {
+				// each listing adds items until it is done
+				begin();
+				this.groups.add(new Group(entry.getKey(), files));
+			} else {
+				for (String[] file : files) {
+					add(file[0]);
+				}
+			}
+		}
+		end();
+		startListings();
+	}
+
+	@Override
+	protected FullHttpRequest getRequest(String remotePath) throws Exception {
+		String urlPath = HttpCloud.encodePath('/' + this.configuration.prefix + remotePath);
+		return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.HEAD, urlPath);
+	}
+
+	@Override
+	protected boolean isSuccessCode(int responseCode) {
+		// not found is a valid result
+		return responseCode / 100 == 2 || responseCode == 404;
+	}
+
+	@Override
+	protected void success(String remotePath, HttpResponse response) throws Exception {
+		if (response.getStatus().code() != 404)
+			this.fileInfos.put(remotePath, AwsGetFileInfo.getFileInfo(this.cloud, response, remotePath, true));
+	}
+
+	@Override
+	protected void failed(String remotePath, Throwable cause) {
+		// other errors than not found (e.g. access denied) fail the whole request
+		setFailed(cause);
+	}
+
+	@Override
+	protected Map<String, FileInfo> getResult() {
+		return this.fileInfos;
+	}
+
+	// helpers
+
+	// start listings while less than configuration.channelCount are in progress
+	void startListings() {
+		List<Group> groups = new ArrayList<>();
+		synchronized (this) {
+			while (this.listingCount < this.configuration.channelCount && !this.groups.isEmpty()) {
+				groups.add(this.groups.remove());
+				++this.listingCount;
+			}
+		}
+		for (Group group : groups) {
+			requestPage(group, group.urlPath);
+		}
+	}
+
+	void requestPage(Group group, String pagePath) {
+		AwsStorage storage = this.storage;
+		Future<ListBucketResult> future = new AwsXmlRequest<ListBucketResult, ListBucketResult.Decoder>(
+				storage.cloud, storage.configuration, storage.host, HttpMethod.GET, pagePath) {
+			@Override
+			protected ListBucketResult.Decoder createDecoder() {
+				return new ListBucketResult.Decoder();
+			}
+
+			@Override
+			protected void success(ListBucketResult.Decoder decoder) throws Exception {
+				setSuccess(decoder.result);
+			}
+		};
+		future.addListener(f -> {
+			if (future.isSuccess())
+				pageReceived(group, future.getNow());
+			else
+				listingDone(group);
+		});
+	}
+
+	void pageReceived(Group group, ListBucketResult result) {
+		String nextPath = null;
+		synchronized (this) {
+			// merge the listed files with the requested files which are sorted in the same order
+			int resolvedCount = 0;
+			int count = group.keys.length;
+			if (result.contents != null) {
+				for (ListBucketResult.Entry entry : result.contents) {
+					// requested files before the listed file do not exist
+					while (group.index < count && ListingSnapshot.compare(group.keys[group.index], entry.key) < 0) {
+						++group.index;
+						++resolvedCount;
+					}
+					if (group.index == count)
+						break;
+					if (group.keys[group.index].equals(entry.key)) {
+						String remotePath = group.remotePaths[group.index];
+						this.fileInfos.put(remotePath, new FileInfo(remotePath, AwsCloud.getHash(entry.eTag), entry.size,
+								HttpCloud.parseTimestamp(entry.lastModified), null, true));
+						++group.index;
+						++resolvedCount;
+					}
+				}
+			}
+
+			if (group.index < count) {
+				if (!result.isTruncated) {
+					// listing is complete: the remaining files do not exist
+					group.index = count;
+				} else if (resolvedCount >= LIST_THRESHOLD) {
+					nextPath = AwsStorage.getNextPath(group.urlPath, result);
+				}
+			}
+		}
+
+		if (nextPath != null)
+			requestPage(group, nextPath);
+		else
+			listingDone(group);
+	}
+
+	// request the files that were not resolved by the listing with HEAD requests
+	void listingDone(Group group) {
+		synchronized (this) {
+			for (int i = group.index; i < group.keys.length; ++i) {
+				add(group.remotePaths[i]);
+			}
+			group.index = group.keys.length;
+			--this.listingCount;
+		}
+		end();
+		startListings();
+	}
+}
@@ -0,0 +1,371 @@
+package it.geenee.cloud.aws;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.*;
+import it.geenee.cloud.http.HttpException;
+import it.geenee.cloud.http.HttpFuture;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * Base class for many small requests of the same kind, e.g. PUT or HEAD of many files. Instead of one connection per
+ * request, up to configuration.channelCount persistent connections are opened and each connection sends one request
+ * after the other. The requests including signature are prepared ahead on the common fork join pool so that the
+ * connections do not wait for hashing. Items can be added while requests are in progress, the future completes when
+ * all items are done and no producer (see begin() and end()) can add more items
+ * @param <V> type of result
+ * @param <I> type of the items to request, e.g. remote path
+ */
+abstract class AwsBatchRequest<V, I> extends HttpFuture<V> {
+
+	// an item with its number of tries
+	class Entry {
+		final I item;
+		int retryCount = 0;
+
+		Entry(I item) {
+			this.item = item;
+		}
+	}
+
+	// a signed request that waits for a free connection
+	class Prepared {
+		final Entry entry;
+		final FullHttpRequest request;
+
+		Prepared(Entry entry, FullHttpRequest request) {
+			this.entry = entry;
+			this.request = request;
+		}
+	}
+
+	// items to prepare, including items that failed with a retry code
+	final Queue<Entry> queue = new ArrayDeque<>();
+
+	// number of requests that get prepared and requests that are prepared
+	int preparingCount = 0;
+	final Queue<Prepared> ready = new ArrayDeque<>();
+
+	// number of connections and connections that wait for a prepared request
+	int connectionCount = 0;
+	final Deque<Connection> idle = new ArrayDeque<>();
+
+	// number of items and items that are done
+	int itemCount = 0;
+	int doneCount = 0;
+
+	// number of producers that can add more items
+	int producerCount = 0;
+
+
+	AwsBatchRequest(AwsStorage storage) {
+		super(storage.cloud, storage.configuration, storage.host, true);
+	}
+
+	/**
+	 * Persistent connection that sends one request after the other
+	 */
+	class Connection extends Handler {
+		ChannelHandlerContext ctx;
+
+		// item of the request in progress, null if the connection is idle
+		Entry current;
+
+		HttpResponse response;
+
+		// number of consecutive connection failures
+		int failCount = 0;
+
+		@Override
+		public void channelActive(ChannelHandlerContext ctx) throws Exception {
+			this.ctx = ctx;
+			super.channelActive(ctx);
+			sendNext();
+		}
+
+		// send the next prepared request, close the connection if no items are left
+		void sendNext() {
+			AwsBatchRequest<V, I> batch = AwsBatchRequest.this;
+			Prepared prepared;
+			synchronized (batch) {
+				if (this.current != null || !this.ctx.channel().isActive())
+					return;
+				prepared = batch.isDone() ? null : batch.ready.poll();
+				if (prepared == null) {
+					if (!batch.isDone() && batch.hasWork()) {
+						// wait until a request is prepared
+						if (!batch.idle.contains(this))
+							batch.idle.add(this);
+						return;
+					}
+				} else {
+					this.current = prepared.entry;
+
+					// connection failure from now on means that the item has to be requested again
+					this.success = false;
+				}
+			}
+
+			if (prepared == null) {
+				this.success = true;
+				this.ctx.close();
+				return;
+			}
+			this.ctx.writeAndFlush(prepared.request);
+
+			// keep the queue of prepared requests filled
+			schedule();
+		}
+
+		@Override
+		public void channelRead0(ChannelHandlerContext ctx, HttpObject msg) throws Exception {
+			if (msg instanceof HttpResponse) {
+				this.response = (HttpResponse) msg;
+
+				// discard content of previous response
+				discardContent();
+			} else if (msg instanceof HttpContent) {
+				HttpContent content = (HttpContent) msg;
+				int responseCode = this.response.getStatus().code();
+				boolean success = isSuccessCode(responseCode);
+				if (!success && !addContent(content.content(), 65536))
+					return;
+
+				if (content instanceof LastHttpContent) {
+					Entry entry;
+					synchronized (AwsBatchRequest.this) {
+						entry = this.current;
+						this.current = null;
+					}
+					this.failCount = 0;
+					this.success = true;
+
+					if (success) {
+						done(entry, this.response, null);
+					} else {
+						// http error of this item, other items continue on this connection
+						responseCode = cloud.fail(host, responseCode, getContent());
+						retryItem(entry, isRetryCode(responseCode), new HttpException(responseCode));
+					}
+
+					if (HttpHeaders.isKeepAlive(this.response))
+						sendNext();
+					else
+						ctx.close();
+				}
+			}
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+			AwsBatchRequest<V, I> batch = AwsBatchRequest.this;
+			Entry entry;
+			synchronized (batch) {
+				batch.idle.remove(this);
+				entry = this.current;
+				this.current = null;
+			}
+
+			// request the item of the interrupted request again
+			if (entry != null)
+				retryItem(entry, true, new IOException("Connection closed"));
+
+			// a failed connection is retried with delay by the base class, a connection that was closed between requests
+			// (e.g. keep-alive timeout of the server) is opened again immediately if items are left
+			boolean reconnect = false;
+			if (this.success) {
+				synchronized (batch) {
+					reconnect = !batch.isDone() && batch.hasWork();
+					if (!reconnect)
+						--batch.connectionCount;
+				}
+			}
+			super.channelInactive(ctx);
+			if (reconnect)
+				connect(this);
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+			// transport error (e.g. connection reset by peer) only fails the batch after retryCount consecutive connection
+			// failures, the item of the interrupted request is requested again
+			AwsBatchRequest<V, I> batch = AwsBatchRequest.this;
+			Entry entry;
+			synchronized (batch) {
+				batch.idle.remove(this);
+				entry = this.current;
+				this.current = null;
+			}
+			if (entry != null)
+				retryItem(entry, true, cause);
+
+			// close connection, channelInactive reconnects with delay
+			noteCause(cause);
+			this.success = false;
+			ctx.close();
+		}
+
+		@Override
+		public boolean retry(int maxRetryCount) {
+			return ++this.failCount >= maxRetryCount;
+		}
+	}
+
+	/**
+	 * Create the request for an item. Host header and signature are added by the caller. Gets called on the common fork
+	 * join pool
+	 */
+	protected abstract FullHttpRequest getRequest(I item) throws Exception;
+
+	/**
+	 * Decides if the http response code indicates success. Override to accept additional codes, e.g. 404 (not found)
+	 * @return true if success() should be called
+	 */
+	protected boolean isSuccessCode(int responseCode) {
+		return responseCode / 100 == 2;
+	}
+
+	/**
+	 * Gets called when the request of an item was successful. Gets called while the lock of this future is held
+	 */
+	protected abstract void success(I item, HttpResponse response) throws Exception;
+
+	/**
+	 * Gets called when an item has failed. Gets called while the lock of this future is held
+	 */
+	protected abstract void failed(I item, Throwable cause);
+
+	/**
+	 * Gets called when all items are done. Gets called while the lock of this future is held
+	 */
+	protected abstract V getResult();
+
+	// helpers
+
+	// add an item, call schedule() after adding items
+	synchronized void add(I item) {
+		this.queue.add(new Entry(item));
+		++this.itemCount;
+	}
+
+	// begin adding items, e.g. in the constructor or when items get added when other requests are done
+	synchronized void begin() {
+		++this.producerCount;
+	}
+
+	// end adding items
+	void end() {
+		synchronized (this) {
+			--this.producerCount;
+		}
+		schedule();
+	}
+
+	// true if items are left to request. The caller must synchronize on this
+	boolean hasWork() {
+		return !this.queue.isEmpty() || this.preparingCount > 0 || !this.ready.isEmpty();
+	}
+
+	// prepare requests so that up to two requests per connection are ready, open connections if needed and complete if
+	// all items are done. Requests are prepared and connections are opened outside of the lock
+	void schedule() {
+		List<Entry> entries = new ArrayList<>();
+		List<Connection> closeConnections = null;
+		int connectCount = 0;
+		synchronized (this) {
+			if (isDone())
+				return;
+			if (this.doneCount == this.itemCount && this.producerCount == 0) {
+				setSuccess(getResult());
+
+				// close idle connections
+				closeConnections = new ArrayList<>(this.idle);
+				this.idle.clear();
+			} else {
+				int channelCount = this.configuration.channelCount;
+				while (this.preparingCount + this.ready.size() < 2 * channelCount && !this.queue.isEmpty()) {
+					entries.add(this.queue.remove());
+					++this.preparingCount;
+				}
+
+				// open connections for items that are not covered by idle connections
+				int waitingCount = this.preparingCount + this.ready.size();
+				while (this.connectionCount < channelCount && connectCount + this.idle.size() < waitingCount) {
+					++this.connectionCount;
+					++connectCount;
+				}
+			}
+		}
+
+		if (closeConnections != null) {
+			for (Connection connection : closeConnections) {
+				connection.ctx.close();
+			}
+			return;
+		}
+		for (Entry entry : entries) {
+			ForkJoinPool.commonPool().execute(() -> prepare(entry));
+		}
+		for (int i = 0; i < connectCount; ++i) {
+			connect(new Connection());
+		}
+	}
+
+	void prepare(Entry entry) {
+		Prepared prepared = null;
+		Throwable cause = null;
+		try {
+			FullHttpRequest request = getRequest(entry.item);
+			request.headers().set(HttpHeaders.Names.HOST, this.host);
+			this.cloud.extendRequest(request, this.configuration);
+			prepared = new Prepared(entry, request);
+		} catch (Throwable e) {
+			cause = e;
+		}
+
+		Connection connection;
+		synchronized (this) {
+			--this.preparingCount;
+			if (prepared != null)
+				this.ready.add(prepared);
+			connection = this.idle.poll();
+		}
+		if (cause != null)
+			done(entry, null, cause);
+		if (connection != null)
+			connection.ctx.channel().eventLoop().execute(connection::sendNext);
+	}
+
+	// request an item again or report it as failed if the maximum retry count is reached
+	void retryItem(Entry entry, boolean retry, Throwable cause) {
+		if (retry && ++entry.retryCount < this.configuration.retryCount) {
+			synchronized (this) {
+				this.queue.add(entry);
+			}
+			schedule();
+		} else {
+			done(entry, null, cause);
+		}
+	}
+
+	void done(Entry entry, HttpResponse response, Throwable cause) {
+		synchronized (this) {
+			if (isDone())
+				return;
+			if (response != null) {
+				try {
+					success(entry.item, response);
+				} catch (Exception e) {
+					failed(entry.item, e);
+				}
+			} else {
+				failed(entry.item, cause);
+			}
+			++this.doneCount;
+		}
+		schedule();
+	}
+}
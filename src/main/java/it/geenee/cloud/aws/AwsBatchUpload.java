@@ -0,0 +1,72 @@
+package it.geenee.cloud.aws;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.*;
+import it.geenee.cloud.*;
+import it.geenee.cloud.http.HttpCloud;
+import org.apache.commons.codec.binary.Base64;
+
+import java.util.*;
+
+
+/**
+ * Uploads many small files with PUT Object requests over persistent connections. The content md5 and the signature
+ * are calculated on the common fork join pool. The result contains a file info for each uploaded file and the files
+ * that could not be uploaded
+ * http://docs.aws.amazon.com/AmazonS3/latest/API/RESTObjectPUT.html
+ */
+class AwsBatchUpload extends AwsBatchRequest<BatchUploadReport, Map.Entry<String, byte[]>> {
+
+	// report
+	final Map<String, FileInfo> files = new LinkedHashMap<>();
+	final Map<String, Throwable> failures = new LinkedHashMap<>();
+
+
+	AwsBatchUpload(AwsStorage storage, Map<String, byte[]> files) {
+		super(storage);
+		begin();
+		for (Map.Entry<String, byte[]> file : files.entrySet()) {
+			add(file);
+		}
+		end();
+	}
+
+	@Override
+	protected FullHttpRequest getRequest(Map.Entry<String, byte[]> file) throws Exception {
+		byte[] data = file.getValue();
+		String urlPath = HttpCloud.encodePath('/' + this.configuration.prefix + file.getKey());
+		FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.PUT, urlPath,
+				Unpooled.wrappedBuffer(data));
+		HttpHeaders headers = request.headers();
+		headers.set(HttpHeaders.Names.CONTENT_LENGTH, data.length);
+		headers.set(HttpHeaders.Names.CONTENT_MD5, Base64.encodeBase64String(HttpCloud.md5(data)));
+		return request;
+	}
+
+	@Override
+	protected void success(Map.Entry<String, byte[]> file, HttpResponse response) throws Exception {
+		HttpHeaders headers = response.headers();
+		String remotePath = file.getKey();
+		this.files.put(remotePath, new FileInfo(remotePath, this.cloud.getHash(headers), file.getValue().length, 0,
+				this.cloud.getVersion(headers), true));
+		invalidate(remotePath);
+	}
+
+	@Override
+	protected void failed(Map.Entry<String, byte[]> file, Throwable cause) {
+		this.failures.put(file.getKey(), cause);
+		invalidate(file.getKey());
+	}
+
+	@Override
+	protected BatchUploadReport getResult() {
+		return new BatchUploadReport(this.files, this.failures);
+	}
+
+	// invalidate cached results that depend on the file
+	void invalidate(String remotePath) {
+		MetadataCache metadataCache = this.configuration.metadataCache;
+		if (metadataCache != null)
+			metadataCache.invalidate(this.configuration.prefix + remotePath);
+	}
+}
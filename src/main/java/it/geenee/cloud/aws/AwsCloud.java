@@ -8,10 +8,9 @@ import it.geenee.cloud.*;
 import org.apache.commons.codec.binary.Hex;
 
 import javax.net.ssl.SSLException;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
 import java.io.*;
 import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -32,7 +31,12 @@ public class AwsCloud extends HttpCloud {
 			3, // retry count
 			8 * 1024 * 1024, // part size (must be more than 5MB for S3)
 			5, // number of parallel threads
-			""); // path prefix
+			"", // path prefix
+			null, // block cache
+			null, // metadata cache
+			null, // transfer manager
+			0, // priority
+			null); // bandwidth limiter
 	public static final String EC2_VERSION = "2015-10-01";
 
 	protected static final String EC2_QUERY = "&Version=" + EC2_VERSION;
@@ -108,7 +112,12 @@ public class AwsCloud extends HttpCloud {
 				configBuilder.retryCount,
 				configBuilder.partSize,
 				configBuilder.channelCount,
-				configBuilder.prefix));
+				configBuilder.prefix,
+				configBuilder.cache,
+				configBuilder.metadataCache,
+				configBuilder.transferManager,
+				configBuilder.priority,
+				configBuilder.bandwidthLimiter));
 	}
 
 	// general
@@ -379,16 +388,18 @@ public class AwsCloud extends HttpCloud {
 		case "s3": {
 				// http://docs.aws.amazon.com/AmazonS3/latest/API/ErrorResponses.html
 				// parse xml
-				JAXBContext jc = JAXBContext.newInstance(S3Error.class);
-				Unmarshaller unmarshaller = jc.createUnmarshaller();
-				S3Error error = (S3Error) unmarshaller.unmarshal(body);
-
-				// patch http status code according to s3 error code
-				switch (error.code) {
-				case "AccessDenied":
-				case "ExpiredToken":
-					statusCode = 403; // forbidden
-					break;
+				S3Error.Decoder decoder = new S3Error.Decoder();
+				decoder.decode(body);
+				S3Error error = decoder.error;
+
+				// patch http status code according to s3 error code (responses to HEAD requests have no body)
+				if (error.code != null) {
+					switch (error.code) {
+					case "AccessDenied":
+					case "ExpiredToken":
+						statusCode = 403; // forbidden
+						break;
+					}
 				}
 
 				logger.error("http: {}, s3: {}, message: {}", statusCode, error.code, error.message);
@@ -397,19 +408,21 @@ public class AwsCloud extends HttpCloud {
 		case "ec2": {
 				// http://docs.aws.amazon.com/AWSEC2/latest/APIReference/errors-overview.html
 				// parse xml
-				JAXBContext jc = JAXBContext.newInstance(Ec2Error.class);
-				Unmarshaller unmarshaller = jc.createUnmarshaller();
-				Ec2Error response = (Ec2Error) unmarshaller.unmarshal(body);
+				Ec2Error.Decoder decoder = new Ec2Error.Decoder();
+				decoder.decode(body);
+				Ec2Error response = decoder.response;
 
 				// iterate over errors
 				if (response.errors != null) {
 					if (response.errors.errors != null) {
 						for (Ec2Error.Error error : response.errors.errors) {
 							// patch http status code according to ec2 error code
-							switch (error.code) {
-							case "RequestExpired":
-								statusCode = 403; // forbidden
-								break;
+							if (error.code != null) {
+								switch (error.code) {
+								case "RequestExpired":
+									statusCode = 403; // forbidden
+									break;
+								}
 							}
 							logger.error("http: {}, ec2: {}, message: {}", statusCode, error.code, error.message);
 						}
@@ -433,6 +446,47 @@ public class AwsCloud extends HttpCloud {
 		return eTag;
 	}
 
+	@Override
+	public int getHashPartCount(HttpHeaders headers) {
+		String eTag = headers.get("ETag");
+		if (eTag == null)
+			return -1;
+
+		// ETag of a file encrypted with SSE-KMS or SSE-C is not based on the MD5 of the data
+		String encryption = headers.get("x-amz-server-side-encryption");
+		if (encryption != null && encryption.startsWith("aws:kms") || headers.contains("x-amz-server-side-encryption-customer-algorithm"))
+			return -1;
+
+		// ETag of multipart upload ends with '-' and the number of parts, otherwise it is the MD5 of the file
+		String hash = getHash(eTag);
+		int pos = hash.lastIndexOf('-');
+		if (pos == -1)
+			return hash.length() == 32 ? 0 : -1;
+		try {
+			return Integer.parseInt(hash.substring(pos + 1));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	@Override
+	public String combineHash(byte[][] partMd5s, boolean multipart) throws Exception {
+		if (!multipart) {
+			// hex encoded md5 of file
+			return partMd5s.length == 0 ? Hex.encodeHexString(MessageDigest.getInstance("MD5").digest())
+					: Hex.encodeHexString(partMd5s[0]);
+		}
+
+		// multipart: calc md5 of md5's of parts
+		MessageDigest md = MessageDigest.getInstance("MD5");
+		for (byte[] partMd5 : partMd5s) {
+			md.update(partMd5);
+		}
+
+		// return hex encoded md5 with part count
+		return Hex.encodeHexString(md.digest()) + '-' + Integer.toString(partMd5s.length);
+	}
+
 	@Override
 	public String getVersion(HttpHeaders headers) {
 		return headers.get("x-amz-version-id");
@@ -445,4 +499,9 @@ public class AwsCloud extends HttpCloud {
 		return HttpCloud.addQuery(urlPath, "versionId", version);
 	}
 
+	@Override
+	public String addPartNumber(String urlPath, int partNumber) {
+		return HttpCloud.addQuery(urlPath, "partNumber", partNumber);
+	}
+
 }
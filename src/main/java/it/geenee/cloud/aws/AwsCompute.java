@@ -7,9 +7,6 @@ import it.geenee.cloud.Compute;
 import it.geenee.cloud.InstanceInfo;
 import it.geenee.cloud.http.HttpCloud;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -77,13 +74,15 @@ public class AwsCompute implements Compute {
 				// http://docs.aws.amazon.com/AWSEC2/latest/APIReference/API_DescribeInstances.html
 				final String pathAndQuery = "/?Action=DescribeInstances" + this.filters + AwsCloud.EC2_QUERY;
 				final List<InstanceInfo> list = new ArrayList<>();
-				return new AwsRequest<List<InstanceInfo>>(cloud, configuration, host, HttpMethod.GET, pathAndQuery) {
+				return new AwsXmlRequest<List<InstanceInfo>, DescribeInstancesResponse.Decoder>(cloud, configuration, host, HttpMethod.GET, pathAndQuery) {
 					@Override
-					protected void success(InputStream content) throws Exception {
-						// parse xml
-						JAXBContext jc = JAXBContext.newInstance(DescribeInstancesResponse.class);
-						Unmarshaller unmarshaller = jc.createUnmarshaller();
-						DescribeInstancesResponse response = (DescribeInstancesResponse) unmarshaller.unmarshal(content);
+					protected DescribeInstancesResponse.Decoder createDecoder() {
+						return new DescribeInstancesResponse.Decoder();
+					}
+
+					@Override
+					protected void success(DescribeInstancesResponse.Decoder decoder) throws Exception {
+						DescribeInstancesResponse response = decoder.response;
 
 						// copy instance infos to list
 						if (response.reservationSet != null && response.reservationSet.items != null) {
@@ -127,13 +126,15 @@ public class AwsCompute implements Compute {
 		// http://docs.aws.amazon.com/AWSEC2/latest/APIReference/API_DescribeTags.html
 		final String pathAndQuery = "/?Action=DescribeTags&Filter.1.Name=resource-id&Filter.1.Value.1=" + resourceId + AwsCloud.EC2_QUERY;
 		final Map<String, String> map = new HashMap<>();
-		return new AwsRequest<Map<String, String>>(this.cloud, this.configuration, this.host, HttpMethod.GET, pathAndQuery) {
+		return new AwsXmlRequest<Map<String, String>, DescribeTagsResponse.Decoder>(this.cloud, this.configuration, this.host, HttpMethod.GET, pathAndQuery) {
+			@Override
+			protected DescribeTagsResponse.Decoder createDecoder() {
+				return new DescribeTagsResponse.Decoder();
+			}
+
 			@Override
-			protected void success(InputStream content) throws Exception {
-				// parse xml
-				JAXBContext jc = JAXBContext.newInstance(DescribeTagsResponse.class);
-				Unmarshaller unmarshaller = jc.createUnmarshaller();
-				DescribeTagsResponse response = (DescribeTagsResponse) unmarshaller.unmarshal(content);
+			protected void success(DescribeTagsResponse.Decoder decoder) throws Exception {
+				DescribeTagsResponse response = decoder.response;
 
 				// copy tags to map
 				if (response.tagSet != null && response.tagSet.items != null) {
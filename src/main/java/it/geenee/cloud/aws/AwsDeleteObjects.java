@@ -0,0 +1,60 @@
+package it.geenee.cloud.aws;
+
+import io.netty.handler.codec.http.*;
+import it.geenee.cloud.Cloud;
+import it.geenee.cloud.http.HttpCloud;
+import it.geenee.cloud.http.HttpFuture;
+import org.apache.commons.codec.binary.Base64;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.ByteArrayOutputStream;
+
+
+/**
+ * Delete up to 1000 objects of a bucket with one request
+ * http://docs.aws.amazon.com/AmazonS3/latest/API/multiobjectdeleteapi.html
+ */
+class AwsDeleteObjects extends HttpFuture<DeleteResult> {
+	// JAXBContext is expensive to create but thread safe
+	static final JAXBContext DELETE_CONTEXT;
+	static {
+		try {
+			DELETE_CONTEXT = JAXBContext.newInstance(Delete.class);
+		} catch (JAXBException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	public AwsDeleteObjects(HttpCloud cloud, Cloud.Configuration configuration, String host, String bucket, Delete delete) {
+		super(cloud, configuration, host, true);
+
+		final String urlPath = HttpCloud.addQuery('/' + HttpCloud.encodePath(bucket), "delete");
+
+		connect(new RequestHandler() {
+			@Override
+			protected FullHttpRequest getRequest() throws Exception {
+				FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, urlPath);
+
+				// set Delete as content, the md5 of the content is required
+				Marshaller marshaller = DELETE_CONTEXT.createMarshaller();
+				ByteArrayOutputStream os = new ByteArrayOutputStream();
+				marshaller.marshal(delete, os);
+				byte[] content = os.toByteArray();
+				request.headers().set(HttpHeaders.Names.CONTENT_MD5, Base64.encodeBase64String(HttpCloud.md5(content)));
+				request.content().writeBytes(content);
+
+				return request;
+			}
+
+			@Override
+			protected void success(HttpResponse response) throws Exception {
+				// parse xml
+				DeleteResult.Decoder decoder = new DeleteResult.Decoder();
+				decoder.decode(getContent());
+				setSuccess(decoder.result);
+			}
+		});
+	}
+}
@@ -26,15 +26,20 @@ class AwsGetFileInfo extends HttpFuture<FileInfo> {
 
 			@Override
 			protected void success(HttpResponse response) throws Exception {
-				HttpHeaders headers = response.headers();
-
-				String hash = cloud.getHash(headers);
-				long size = Long.parseLong(headers.get("Content-Length"));
-				long timestamp = HttpHeaders.getDateHeader(response, "Last-Modified").getTime(); // https://www.w3.org/Protocols/rfc2616/rfc2616-sec3.html#sec3.3.1
-				String version = cloud.getVersion(headers);
-
-				setSuccess(new FileInfo(remotePath, hash, size, timestamp, version, requestedVersion == null));
+				setSuccess(getFileInfo(cloud, response, remotePath, requestedVersion == null));
 			}
 		});
 	}
+
+	// get file info from the headers of the response of a HEAD request
+	static FileInfo getFileInfo(HttpCloud cloud, HttpResponse response, String remotePath, boolean latest) throws Exception {
+		HttpHeaders headers = response.headers();
+
+		String hash = cloud.getHash(headers);
+		long size = Long.parseLong(headers.get("Content-Length"));
+		long timestamp = HttpHeaders.getDateHeader(response, "Last-Modified").getTime(); // https://www.w3.org/Protocols/rfc2616/rfc2616-sec3.html#sec3.3.1
+		String version = cloud.getVersion(headers);
+
+		return new FileInfo(remotePath, hash, size, timestamp, version, latest);
+	}
 }
@@ -0,0 +1,135 @@
+package it.geenee.cloud.aws;
+
+import io.netty.util.concurrent.Future;
+import it.geenee.cloud.*;
+import it.geenee.cloud.http.HttpException;
+import it.geenee.cloud.http.HttpTransfer;
+import it.geenee.cloud.http.UploadJournal;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+
+/**
+ * Uploads local files and records the progress in an upload journal so that a restarted process resumes the unfinished
+ * uploads instead of uploading everything again. Unfinished uploads of the journal are resumed first, multipart uploads
+ * continue with their upload id and only upload the parts that are not in the journal. Uploads whose local file has
+ * changed or whose multipart upload no longer exists are started from scratch. Files run in parallel as long as their
+ * parts fit into the channels, see AwsParallelActions
+ */
+class AwsJournaledUpload extends AwsParallelActions<BatchUploadReport, UploadJournal.Entry, FileInfo> {
+	final AwsStorage storage;
+	final UploadJournal journal;
+
+	// report
+	final Map<String, FileInfo> files = new LinkedHashMap<>();
+	final Map<String, Throwable> failures = new LinkedHashMap<>();
+
+
+	AwsJournaledUpload(AwsStorage storage, Map<String, File> files, File journal) {
+		super(storage);
+		this.storage = storage;
+		this.journal = new UploadJournal(journal);
+
+		try {
+			// resume unfinished uploads of a previous run, a file that is queued again is not added twice
+			Map<String, File> add = new LinkedHashMap<>();
+			Set<String> resumed = new HashSet<>();
+			for (UploadJournal.Entry entry : this.journal.open()) {
+				File file = files.get(entry.remotePath);
+				if (file != null && !file.getAbsoluteFile().equals(entry.file)) {
+					// replaced by a different local file
+					discard(entry);
+				} else if (!entry.file.isFile()) {
+					discard(entry);
+					this.failures.put(entry.remotePath, new FileNotFoundException(entry.file.getPath()));
+				} else if (!entry.isUnchanged() || entry.partSize != this.configuration.partSize) {
+					// parts of the multipart upload do not fit any more: upload again
+					discard(entry);
+					add.put(entry.remotePath, entry.file);
+				} else {
+					this.queue.add(entry);
+					resumed.add(entry.remotePath);
+				}
+			}
+			for (Map.Entry<String, File> file : files.entrySet()) {
+				if (!resumed.contains(file.getKey()))
+					add.put(file.getKey(), file.getValue());
+			}
+			this.queue.addAll(this.journal.add(add, this.configuration.partSize));
+		} catch (IOException e) {
+			setFailed(e);
+			return;
+		}
+		schedule();
+	}
+
+	@Override
+	protected int getChannelCount(UploadJournal.Entry entry) {
+		// one channel per part that is left, up to configuration.channelCount
+		long partSize = this.configuration.partSize;
+		long partCount = entry.size <= partSize ? 1 : (entry.size + partSize - 1) / partSize - entry.parts.size();
+		return (int) Math.max(1, Math.min(partCount, this.configuration.channelCount));
+	}
+
+	@Override
+	protected Future<FileInfo> start(UploadJournal.Entry entry) {
+		FileChannel file;
+		try {
+			file = FileChannel.open(entry.file.toPath(), StandardOpenOption.READ);
+		} catch (IOException e) {
+			return this.cloud.globals.eventLoopGroup.next().newFailedFuture(e);
+		}
+		HttpTransfer transfer = AwsUploader.create(this.cloud, this.configuration, file, this.host, this.journal, entry);
+		this.storage.invalidateWhenDone(transfer, entry.remotePath);
+		transfer.addListener(f -> {
+			try {
+				file.close();
+			} catch (IOException e) {
+				// file was only read
+			}
+		});
+		return transfer;
+	}
+
+	@Override
+	protected void done(UploadJournal.Entry entry, Future<FileInfo> future) {
+		Throwable cause = future.cause();
+		try {
+			if (future.isSuccess()) {
+				this.journal.done(entry);
+				this.files.put(entry.remotePath, future.getNow());
+			} else if (entry.uploadId != null && cause instanceof HttpException && ((HttpException) cause).getCode() == 404) {
+				// multipart upload was aborted or has expired: upload again
+				this.journal.done(entry);
+				this.queue.addAll(this.journal.add(Collections.singletonMap(entry.remotePath, entry.file), this.configuration.partSize));
+			} else {
+				// keep the upload in the journal so that it can be resumed
+				this.failures.put(entry.remotePath, cause);
+			}
+		} catch (IOException e) {
+			this.failures.put(entry.remotePath, e);
+		}
+	}
+
+	@Override
+	protected BatchUploadReport getResult() {
+		// the journal is only needed to resume failed uploads
+		if (this.failures.isEmpty())
+			this.journal.delete();
+		return new BatchUploadReport(this.files, this.failures);
+	}
+
+	// helpers
+
+	// remove an upload from the journal and abort its multipart upload
+	void discard(UploadJournal.Entry entry) throws IOException {
+		this.journal.done(entry);
+		if (entry.uploadId != null)
+			this.storage.startDeleteUpload(entry.remotePath, entry.uploadId);
+	}
+}
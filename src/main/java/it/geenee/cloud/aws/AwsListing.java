@@ -0,0 +1,122 @@
+package it.geenee.cloud.aws;
+
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.util.concurrent.Future;
+import it.geenee.cloud.*;
+import it.geenee.cloud.http.HttpCloud;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Listing of files that requests one page of up to 1000 entries at a time. While the consumer processes a page, the
+ * next page is requested in advance
+ */
+class AwsListing implements Storage.Listing<FileInfo> {
+	final AwsStorage storage;
+	final String remotePath;
+	final Storage.ListMode mode;
+	final String urlPath;
+
+	// path and query of next page, null if there are no more pages
+	String nextPath;
+
+	// future of page that was handed out to the consumer last
+	Future<List<FileInfo>> pending;
+
+	// future of page that was requested in advance, null if none
+	Future<List<FileInfo>> prefetched;
+
+	// future of page that was received last
+	Future<List<FileInfo>> received;
+
+	AwsListing(AwsStorage storage, String remotePath, Storage.ListMode mode) {
+		this.storage = storage;
+		this.remotePath = remotePath;
+		this.mode = mode;
+		String urlPath = storage.encodePathPrefix(remotePath);
+		this.urlPath = mode == Storage.ListMode.UNVERSIONED ? HttpCloud.addQuery(urlPath, "list-type", 2)
+				: HttpCloud.addQuery(urlPath, "versions");
+		this.nextPath = this.urlPath;
+	}
+
+	@Override
+	public synchronized Future<List<FileInfo>> startNext() {
+		if (this.pending != null && !this.pending.isDone())
+			throw new IllegalStateException("Previous page is still pending");
+
+		// hand out the page that was requested in advance. If it failed, nextPath still refers to it and it gets
+		// requested again on the next call
+		Future<List<FileInfo>> future = this.prefetched;
+		this.prefetched = null;
+		if (future == null) {
+			// check if all pages were delivered
+			if (this.nextPath == null)
+				return this.storage.cloud.globals.eventLoopGroup.next().newSucceededFuture(null);
+			future = requestPage(this.nextPath);
+		} else if (future == this.received && this.nextPath != null) {
+			// the page is already there: request the one after it
+			this.prefetched = requestPage(this.nextPath);
+		}
+		this.pending = future;
+		return future;
+	}
+
+	Future<List<FileInfo>> requestPage(String path) {
+		return this.mode == Storage.ListMode.UNVERSIONED ? startPage(path) : startVersionsPage(path);
+	}
+
+	// http://docs.aws.amazon.com/AmazonS3/latest/API/v2-RESTBucketGET.html
+	Future<List<FileInfo>> startPage(String path) {
+		AwsStorage storage = this.storage;
+		return new AwsXmlRequest<List<FileInfo>, ListBucketResult.Decoder>(storage.cloud, storage.configuration, storage.host, HttpMethod.GET, path) {
+			@Override
+			protected ListBucketResult.Decoder createDecoder() {
+				return new ListBucketResult.Decoder();
+			}
+
+			@Override
+			protected void success(ListBucketResult.Decoder decoder) throws Exception {
+				ListBucketResult result = decoder.result;
+				List<FileInfo> list = new ArrayList<>();
+				storage.addFileInfos(result, remotePath, list);
+
+				// advance to next page before the consumer gets notified
+				pageDone(this, AwsStorage.getNextPath(urlPath, result));
+				setSuccess(list);
+			}
+		};
+	}
+
+	// http://docs.aws.amazon.com/AmazonS3/latest/API/RESTBucketGETVersion.html
+	Future<List<FileInfo>> startVersionsPage(String path) {
+		AwsStorage storage = this.storage;
+		return new AwsXmlRequest<List<FileInfo>, ListVersionsResult.Decoder>(storage.cloud, storage.configuration, storage.host, HttpMethod.GET, path) {
+			@Override
+			protected ListVersionsResult.Decoder createDecoder() {
+				return new ListVersionsResult.Decoder();
+			}
+
+			@Override
+			protected void success(ListVersionsResult.Decoder decoder) throws Exception {
+				ListVersionsResult result = decoder.result;
+				List<FileInfo> list = new ArrayList<>();
+				storage.addFileInfos(result, remotePath, mode, list);
+
+				// advance to next page before the consumer gets notified
+				pageDone(this, result.isTruncated ? AwsStorage.getNextVersionsPath(urlPath, result) : null);
+				setSuccess(list);
+			}
+		};
+	}
+
+	synchronized void pageDone(Future<List<FileInfo>> future, String nextPath) {
+		this.nextPath = nextPath;
+		this.received = future;
+
+		// request the next page in advance if the consumer already waits for this page
+		if (future == this.pending && this.prefetched == null && nextPath != null)
+			this.prefetched = requestPage(nextPath);
+	}
+}
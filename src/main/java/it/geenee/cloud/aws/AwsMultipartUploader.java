@@ -2,6 +2,7 @@ package it.geenee.cloud.aws;
 
 import java.io.*;
 import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
 
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.handler.codec.http.*;
@@ -9,18 +10,33 @@ import io.netty.handler.codec.http.*;
 import it.geenee.cloud.*;
 import it.geenee.cloud.http.HttpCloud;
 import it.geenee.cloud.http.HttpTransfer;
+import it.geenee.cloud.http.UploadJournal;
 
 import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
 
 /**
  * AWS mulitpart uploader
  */
 public class AwsMultipartUploader extends HttpTransfer {
+	// JAXBContext is expensive to create but thread safe
+	static final JAXBContext COMPLETE_MULTIPART_UPLOAD_CONTEXT;
+	static {
+		try {
+			COMPLETE_MULTIPART_UPLOAD_CONTEXT = JAXBContext.newInstance(CompleteMultipartUpload.class);
+		} catch (JAXBException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
 	String remotePath;
 	long size;
 
+	// journal that records upload id and uploaded parts, null if not journaled
+	UploadJournal journal = null;
+	UploadJournal.Entry entry;
+
 	// http://docs.aws.amazon.com/AmazonS3/latest/API/mpUploadInitiate.html
 	class InitiateHandler extends HttpTransfer.RequestHandler {
 		@Override
@@ -31,9 +47,13 @@ public class AwsMultipartUploader extends HttpTransfer {
 		@Override
 		protected void success(HttpResponse response) throws Exception {
 			// parse xml
-			JAXBContext jc = JAXBContext.newInstance(InitiateMultipartUploadResult.class);
-			Unmarshaller unmarshaller = jc.createUnmarshaller();
-			InitiateMultipartUploadResult result = (InitiateMultipartUploadResult) unmarshaller.unmarshal(getContent());
+			InitiateMultipartUploadResult.Decoder decoder = new InitiateMultipartUploadResult.Decoder();
+			decoder.decode(getContent());
+			InitiateMultipartUploadResult result = decoder.result;
+
+			// record upload id before the first part is uploaded
+			if (journal != null)
+				journal.initiated(entry, result.uploadId);
 
 			// initate done, start upload
 			startTransfer(size, result.uploadId);
@@ -53,8 +73,7 @@ public class AwsMultipartUploader extends HttpTransfer {
 			FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, urlPath + "?uploadId=" + id);
 
 			// set CompleteMultipartUpload as content
-			JAXBContext jc = JAXBContext.newInstance(CompleteMultipartUpload.class);
-			Marshaller marshaller = jc.createMarshaller();
+			Marshaller marshaller = COMPLETE_MULTIPART_UPLOAD_CONTEXT.createMarshaller();
 			ByteArrayOutputStream os = new ByteArrayOutputStream();
 			marshaller.marshal(completeMultipartUpload, os);
 			request.content().writeBytes(os.toByteArray());
@@ -66,9 +85,9 @@ public class AwsMultipartUploader extends HttpTransfer {
 		protected void success(HttpResponse response) throws Exception {
 
 			// parse xml
-			JAXBContext jc = JAXBContext.newInstance(CompleteMultipartUploadResult.class);
-			Unmarshaller unmarshaller = jc.createUnmarshaller();
-			CompleteMultipartUploadResult result = (CompleteMultipartUploadResult) unmarshaller.unmarshal(getContent());
+			CompleteMultipartUploadResult.Decoder decoder = new CompleteMultipartUploadResult.Decoder();
+			decoder.decode(getContent());
+			CompleteMultipartUploadResult result = decoder.result;
 
 			AwsMultipartUploader parent = AwsMultipartUploader.this;
 
@@ -95,6 +114,40 @@ public class AwsMultipartUploader extends HttpTransfer {
 		connect(new InitiateHandler());
 	}
 
+	/**
+	 * Constructor for an upload that is skipped if the remote file is identical, see HttpTransfer.startUploadIfChanged()
+	 */
+	public AwsMultipartUploader(HttpCloud cloud, Cloud.Configuration configuration, FileChannel file, String host, String urlPath, String remotePath, long size,
+			Callable<String> hash, String remoteHash, boolean head) {
+		super(cloud, configuration, file, host, urlPath);
+		this.remotePath = remotePath;
+		this.size = size;
+
+		// connect to host if the remote file differs
+		startUploadIfChanged(remotePath, hash, remoteHash, head, () -> connect(new InitiateHandler()));
+	}
+
+	/**
+	 * Constructor for an upload that is recorded in an upload journal. If the journal entry has an upload id, the
+	 * multipart upload is resumed and only the parts that are not in the journal are uploaded
+	 */
+	public AwsMultipartUploader(HttpCloud cloud, Cloud.Configuration configuration, FileChannel file, String host, String urlPath,
+			UploadJournal journal, UploadJournal.Entry entry) {
+		super(cloud, configuration, file, host, urlPath);
+		this.remotePath = entry.remotePath;
+		this.size = entry.size;
+		this.journal = journal;
+		this.entry = entry;
+
+		if (entry.uploadId != null) {
+			// resume upload, the ETags of the uploaded parts are needed for completion
+			startTransfer(entry.size, entry.uploadId, entry.parts);
+		} else {
+			// connect to host
+			connect(new InitiateHandler());
+		}
+	}
+
 	// helpers
 
 	@Override
@@ -103,8 +156,21 @@ public class AwsMultipartUploader extends HttpTransfer {
 		connect(new UploadHandler(urlPath + "?partNumber=" + (part.index + 1) + "&uploadId=" + id, part) {
 			@Override
 			protected void success(Part part, HttpHeaders headers) {
+				String eTag = headers.get("ETag");
+
+				// record part before it counts as uploaded
+				AwsMultipartUploader parent = AwsMultipartUploader.this;
+				if (parent.journal != null) {
+					try {
+						parent.journal.partDone(parent.entry, part.index, eTag);
+					} catch (IOException e) {
+						parent.setFailed(e);
+						return;
+					}
+				}
+
 				// set state of part to SUCCESS (ETag is id of uploaded part)
-				part.success(headers.get("ETag"));
+				part.success(eTag);
 			}
 		});
 	}
@@ -0,0 +1,131 @@
+package it.geenee.cloud.aws;
+
+import io.netty.util.concurrent.Future;
+import it.geenee.cloud.http.HttpFuture;
+
+import java.util.*;
+
+
+/**
+ * Base class for operations that consist of many actions, e.g. a copy or delete request for each file of a listing. The
+ * actions run with up to configuration.channelCount channels in parallel. Actions are either queued (e.g. as pages of a
+ * listing arrive) or created on demand by overriding next(). If the operation requests pages, the next page is only
+ * requested when the queue of waiting actions runs low, therefore the memory usage does not depend on the number of
+ * listed items.
+ * Actions and pages are started outside of the lock of this future: listeners of requests are called while the lock of
+ * the request is held and call back into this future, therefore holding the lock of this future while starting a request
+ * could deadlock
+ * @param <V> type of result
+ * @param <A> type of action
+ * @param <R> type of the result of an action
+ */
+abstract class AwsParallelActions<V, A, R> extends HttpFuture<V> {
+	// actions that wait for a free channel
+	final Queue<A> queue = new ArrayDeque<>();
+
+	// next action that waits until enough channels are free
+	A next = null;
+
+	// number of channels used by actions in progress
+	int activeCount = 0;
+
+	// true while a page is requested
+	boolean pageRequested = false;
+
+
+	AwsParallelActions(AwsStorage storage) {
+		super(storage.cloud, storage.configuration, storage.host, true);
+	}
+
+	/**
+	 * Get the next action. Override to create actions on demand. Gets called while the lock of this future is held
+	 * @return next action or null if there is none
+	 */
+	protected A next() {
+		return this.queue.poll();
+	}
+
+	/**
+	 * Get the number of channels an action uses. Gets called while the lock of this future is held
+	 */
+	protected int getChannelCount(A action) {
+		return 1;
+	}
+
+	/**
+	 * Check if there are pages left to request. Gets called while the lock of this future is held
+	 */
+	protected boolean hasPages() {
+		return false;
+	}
+
+	/**
+	 * Request the next page. When the page is received, reset pageRequested and queue its actions while the lock of this
+	 * future is held, then call schedule()
+	 */
+	protected void requestPage() {
+	}
+
+	/**
+	 * Start an action
+	 * @return future of the action
+	 */
+	protected abstract Future<R> start(A action);
+
+	/**
+	 * Gets called when an action is done. Gets called while the lock of this future is held
+	 */
+	protected abstract void done(A action, Future<R> future);
+
+	/**
+	 * Gets called when all actions are done and no pages are left. Gets called while the lock of this future is held
+	 */
+	protected abstract V getResult();
+
+	// helpers
+
+	// start waiting actions while channels are free, request the next page if needed and complete if all actions are done
+	void schedule() {
+		List<A> actions = new ArrayList<>();
+		boolean requestPage;
+		synchronized (this) {
+			if (isDone())
+				return;
+			int channelCount = this.configuration.channelCount;
+			while (true) {
+				if (this.next == null)
+					this.next = next();
+				if (this.next == null)
+					break;
+				int actionChannelCount = getChannelCount(this.next);
+				if (this.activeCount > 0 && this.activeCount + actionChannelCount > channelCount)
+					break;
+				actions.add(this.next);
+				this.next = null;
+				this.activeCount += actionChannelCount;
+			}
+			if (this.activeCount == 0 && !this.pageRequested && !hasPages()) {
+				setSuccess(getResult());
+				return;
+			}
+			requestPage = !this.pageRequested && hasPages() && this.queue.size() < channelCount;
+			if (requestPage)
+				this.pageRequested = true;
+		}
+
+		for (A action : actions) {
+			Future<R> future = start(action);
+			future.addListener(f -> actionDone(action, future));
+		}
+		if (requestPage)
+			requestPage();
+	}
+
+	void actionDone(A action, Future<R> future) {
+		synchronized (this) {
+			this.activeCount -= getChannelCount(action);
+			done(action, future);
+		}
+		schedule();
+	}
+}
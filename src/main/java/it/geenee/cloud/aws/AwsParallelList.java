@@ -0,0 +1,229 @@
+package it.geenee.cloud.aws;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.*;
+import it.geenee.cloud.*;
+import it.geenee.cloud.http.HttpCloud;
+import it.geenee.cloud.http.HttpFuture;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+
+/**
+ * Lists all files that have the given remote path as prefix using ListObjectsV2. The key space is partitioned into
+ * ranges that are listed in parallel using up to configuration.channelCount channels. Listing starts with one range,
+ * whenever a page is truncated and a channel is idle, the rest of the range is split at the next sibling of the subtree
+ * of the last listed key (e.g. after "foo/a/x" at "foo/b" or "foo/a0") and listed with start-after. Therefore the
+ * parallelism adapts to the key space, also if it is flat or has only one sub-directory. The result is in key order as
+ * with startList()
+ * http://docs.aws.amazon.com/AmazonS3/latest/API/v2-RESTBucketGET.html
+ */
+class AwsParallelList extends HttpFuture<FileInfo[]> {
+	final AwsStorage storage;
+	final String remotePath;
+
+	// path and query of the listing, e.g. "/foo?prefix=bar%2F&list-type=2"
+	final String urlPath;
+
+	// prefix of all listed keys relative to bucket, e.g. "bar/"
+	final String prefix;
+
+	// a range of keys that gets listed independently
+	class Partition {
+		// first key of range, null for the start of the listing
+		final String begin;
+
+		// end of range (exclusive), null for the end of the listing. Gets reduced when the rest of the range is split off
+		String end;
+
+		// path and query of first page
+		final String urlPath;
+
+		// files of this partition
+		final List<FileInfo> list = new ArrayList<>();
+
+		Partition(String begin, String end) {
+			this.begin = begin;
+			this.end = end;
+			this.urlPath = begin == null ? AwsParallelList.this.urlPath
+					: HttpCloud.addQuery(AwsParallelList.this.urlPath, "start-after", getStartAfter(begin));
+		}
+	}
+
+	// all partitions
+	final List<Partition> partitions = new ArrayList<>();
+
+	// partitions that wait for a free channel
+	final Queue<Partition> queue = new ArrayDeque<>();
+
+	// number of partitions in progress
+	int activeCount = 0;
+
+	AwsParallelList(AwsStorage storage, String remotePath) {
+		super(storage.cloud, storage.configuration, storage.host, true);
+		this.storage = storage;
+		this.remotePath = remotePath;
+		this.urlPath = HttpCloud.addQuery(storage.encodePathPrefix(remotePath), "list-type", 2);
+		String path = this.configuration.prefix + remotePath;
+		int pos = path.indexOf('/');
+		this.prefix = pos == -1 ? "" : path.substring(pos + 1);
+
+		// start with one partition for the whole listing
+		Partition partition = new Partition(null, null);
+		this.partitions.add(partition);
+		this.queue.add(partition);
+		startPartitions();
+	}
+
+	// request a page of a partition
+	void request(final Partition partition, final String urlPath) {
+		connect(new RequestHandler() {
+			ListBucketResult.Decoder decoder;
+
+			@Override
+			public void channelActive(ChannelHandlerContext ctx) throws Exception {
+				// new decoder for each try
+				this.decoder = new ListBucketResult.Decoder();
+				super.channelActive(ctx);
+			}
+
+			@Override
+			protected FullHttpRequest getRequest() throws Exception {
+				return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, urlPath);
+			}
+
+			@Override
+			protected boolean receive(ByteBuf buf) throws Exception {
+				this.decoder.decode(buf);
+				return true;
+			}
+
+			@Override
+			protected void success(HttpResponse response) throws Exception {
+				ListBucketResult result = this.decoder.result;
+				AwsParallelList.this.success(partition, result);
+			}
+		});
+	}
+
+	void success(Partition partition, ListBucketResult result) throws Exception {
+		// add the files of the range. The pages of a partition are requested one after the other, therefore the end of
+		// the range is only modified by this method
+		boolean ended = false;
+		String lastKey = null;
+		if (result.contents != null) {
+			for (ListBucketResult.Entry entry : result.contents) {
+				// skip keys before the range, see getStartAfter()
+				if (partition.begin != null && ListingSnapshot.compare(entry.key, partition.begin) < 0)
+					continue;
+				if (partition.end != null && ListingSnapshot.compare(entry.key, partition.end) >= 0) {
+					ended = true;
+					break;
+				}
+				partition.list.add(new FileInfo(this.storage.getPath(entry.key, this.remotePath), AwsCloud.getHash(entry.eTag),
+						entry.size, HttpCloud.parseTimestamp(entry.lastModified), null, true));
+				lastKey = entry.key;
+			}
+		}
+
+		String nextPath = null;
+		synchronized (this) {
+			if (!ended) {
+				nextPath = AwsStorage.getNextPath(partition.urlPath, result);
+
+				// split off the rest of the range if a channel is idle
+				if (nextPath != null && lastKey != null && this.queue.isEmpty() && this.activeCount < this.configuration.channelCount) {
+					String splitKey = getSplitKey(lastKey, this.prefix.length(), partition.end);
+					if (splitKey != null) {
+						Partition p = new Partition(splitKey, partition.end);
+						partition.end = splitKey;
+						this.partitions.add(p);
+						this.queue.add(p);
+					}
+				}
+			}
+			if (nextPath == null)
+				--this.activeCount;
+		}
+
+		// either repeat with continuation token or start queued partitions
+		if (nextPath != null)
+			request(partition, nextPath);
+		startPartitions();
+	}
+
+	// start queued partitions while channels are available, complete if all partitions are done
+	void startPartitions() {
+		int channelCount = Math.max(this.configuration.channelCount, 1);
+		while (true) {
+			Partition partition;
+			synchronized (this) {
+				if (this.activeCount == 0 && this.queue.isEmpty()) {
+					if (!isDone())
+						setSuccess(merge());
+					return;
+				}
+				if (this.activeCount >= channelCount || this.queue.isEmpty())
+					return;
+				partition = this.queue.remove();
+				++this.activeCount;
+			}
+			request(partition, partition.urlPath);
+		}
+	}
+
+	// concatenate the files of the partitions in key order
+	FileInfo[] merge() {
+		this.partitions.sort((a, b) -> a.begin == null || b.begin == null ? (a.begin == null ? 0 : 1) - (b.begin == null ? 0 : 1)
+				: ListingSnapshot.compare(a.begin, b.begin));
+		int size = 0;
+		for (Partition partition : this.partitions) {
+			size += partition.list.size();
+		}
+		FileInfo[] fileInfos = new FileInfo[size];
+		int index = 0;
+		for (Partition partition : this.partitions) {
+			for (FileInfo fileInfo : partition.list) {
+				fileInfos[index++] = fileInfo;
+			}
+		}
+		return fileInfos;
+	}
+
+	// helpers
+
+	/**
+	 * Get the key where the rest of a range gets split off: the next sibling of the largest subtree of the last listed key
+	 * that ends before the end of the range, e.g. "foo/b" for "foo/a/x" or "foo/a0" if the range ends at "foo/b"
+	 * @param key last listed key
+	 * @param begin length of the prefix of all keys
+	 * @param end end of range, null for the end of the listing
+	 * @return split key or null if the range can not be split
+	 */
+	static String getSplitKey(String key, int begin, String end) {
+		for (int i = begin; i < key.length(); i = key.offsetByCodePoints(i, 1)) {
+			int c = key.codePointAt(i);
+			if (c == Character.MAX_CODE_POINT)
+				continue;
+			String splitKey = key.substring(0, i) + new String(Character.toChars(c == 0xd7ff ? 0xe000 : c + 1));
+			if (end == null || ListingSnapshot.compare(splitKey, end) < 0)
+				return splitKey;
+		}
+		return null;
+	}
+
+	/**
+	 * Get the start-after value of a range that begins at the given split key: the split key with the previous last
+	 * character followed by the largest character. Keys between it and the split key belong to the previous range
+	 */
+	static String getStartAfter(String splitKey) {
+		int last = splitKey.offsetByCodePoints(splitKey.length(), -1);
+		int c = splitKey.codePointAt(last);
+		return splitKey.substring(0, last) + new String(Character.toChars(c == 0xe000 ? 0xd7ff : c - 1))
+				+ new String(Character.toChars(Character.MAX_CODE_POINT));
+	}
+}
@@ -14,15 +14,30 @@ import it.geenee.cloud.http.HttpFuture;
 abstract public class AwsRequest<V> extends HttpFuture<V> {
 
 	public AwsRequest(HttpCloud cloud, Cloud.Configuration configuration, String host, HttpMethod method, String urlPath) {
+		this(cloud, configuration, host, method, urlPath, null);
+	}
+
+	/**
+	 * Constructor for requests with additional headers
+	 * @param headers additional headers (e.g. x-amz-copy-source), get signed with the request
+	 */
+	public AwsRequest(HttpCloud cloud, Cloud.Configuration configuration, String host, HttpMethod method, String urlPath, HttpHeaders headers) {
 		super(cloud, configuration, host, true);
-		request(method, urlPath);
+		request(method, urlPath, headers);
 	}
 
 	void request(HttpMethod method, String urlPath) {
+		request(method, urlPath, null);
+	}
+
+	void request(HttpMethod method, String urlPath, HttpHeaders headers) {
 		connect(new RequestHandler() {
 			@Override
 			protected FullHttpRequest getRequest() throws Exception {
-				return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, urlPath);
+				FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, urlPath);
+				if (headers != null)
+					request.headers().add(headers);
+				return request;
 			}
 
 			@Override
@@ -0,0 +1,160 @@
+package it.geenee.cloud.aws;
+
+import io.netty.util.concurrent.Future;
+import it.geenee.cloud.*;
+
+import java.util.*;
+
+
+/**
+ * Restores all files that have the given remote path as prefix to their state at a point in time. The versions are
+ * listed page by page in key order, therefore the version to restore is selected for each file in one pass. Copies and
+ * deletes run in parallel, see AwsParallelActions
+ */
+class AwsRestore extends AwsParallelActions<RestoreReport, AwsRestore.Action, Void> {
+	final AwsStorage storage;
+	final String remotePath;
+	final long timestamp;
+	final Storage.Listing<FileInfo> listing;
+
+	// a copy or delete that restores a file
+	static class Action {
+		final String path;
+
+		// version to copy, null to delete the file
+		final String version;
+
+		Action(String path, String version) {
+			this.path = path;
+			this.version = version;
+		}
+	}
+
+	// file whose versions are currently collected
+	String path;
+
+	// latest version or delete marker of the file
+	FileInfo latest;
+
+	// version or delete marker that was the latest at the point in time, null if the file did not exist yet
+	FileInfo selected;
+
+	// true when the listing is complete
+	boolean listed = false;
+
+	// report
+	long unchanged = 0;
+	long copied = 0;
+	long deleted = 0;
+	final Map<String, Throwable> failures = new LinkedHashMap<>();
+
+
+	AwsRestore(AwsStorage storage, String remotePath, long timestamp) {
+		super(storage);
+		this.storage = storage;
+		this.remotePath = remotePath;
+		this.timestamp = timestamp;
+		this.listing = storage.listPages(remotePath, Storage.ListMode.VERSIONED_DELETED_ALL);
+		schedule();
+	}
+
+	@Override
+	protected boolean hasPages() {
+		return !this.listed;
+	}
+
+	@Override
+	protected void requestPage() {
+		Future<List<FileInfo>> future;
+		try {
+			future = this.listing.startNext();
+		} catch (Exception e) {
+			setFailed(e);
+			return;
+		}
+		future.addListener(f -> {
+			if (future.isSuccess())
+				pageReceived(future.getNow());
+			else
+				setFailed(future.cause());
+		});
+	}
+
+	@Override
+	protected Future<Void> start(Action action) {
+		String remotePath = this.remotePath + action.path;
+		return action.version != null
+				? this.storage.requestCopy(remotePath, action.version, remotePath)
+				: this.storage.startDelete(remotePath, null);
+	}
+
+	@Override
+	protected void done(Action action, Future<Void> future) {
+		if (!future.isSuccess())
+			this.failures.put(action.path, future.cause());
+		else if (action.version != null)
+			++this.copied;
+		else
+			++this.deleted;
+	}
+
+	@Override
+	protected RestoreReport getResult() {
+		return new RestoreReport(this.timestamp, this.unchanged, this.copied, this.deleted, this.failures);
+	}
+
+	void pageReceived(List<FileInfo> page) {
+		synchronized (this) {
+			this.pageRequested = false;
+			if (page == null) {
+				// end of listing
+				selected();
+				this.listed = true;
+			} else {
+				// versions and delete markers of a page are decoded separately, sorting makes the entries of each file
+				// consecutive. Only the entries of the last file of a page may continue on the next page
+				page.sort((a, b) -> ListingSnapshot.compare(a.path, b.path));
+				for (FileInfo fileInfo : page) {
+					add(fileInfo);
+				}
+			}
+		}
+		schedule();
+	}
+
+	void add(FileInfo fileInfo) {
+		if (!fileInfo.path.equals(this.path)) {
+			selected();
+			this.path = fileInfo.path;
+		}
+		if (fileInfo.latest)
+			this.latest = fileInfo;
+
+		// select the newest entry at the point in time, prefer the latest one if timestamps are equal
+		if (fileInfo.timestamp <= this.timestamp && (this.selected == null || fileInfo.timestamp > this.selected.timestamp
+				|| fileInfo.timestamp == this.selected.timestamp && fileInfo.latest))
+			this.selected = fileInfo;
+	}
+
+	// all entries of the current file are collected: decide how to restore it
+	void selected() {
+		if (this.path == null)
+			return;
+		FileInfo latest = this.latest;
+		FileInfo selected = this.selected;
+		if (selected == null || selected.hash == null) {
+			// file did not exist or was deleted at the point in time
+			if (latest == null || latest.hash == null)
+				++this.unchanged;
+			else
+				this.queue.add(new Action(this.path, null));
+		} else if (latest != null && selected.version.equals(latest.version)) {
+			++this.unchanged;
+		} else {
+			this.queue.add(new Action(this.path, selected.version));
+		}
+		this.path = null;
+		this.latest = null;
+		this.selected = null;
+	}
+}
@@ -7,21 +7,21 @@ import it.geenee.cloud.http.HttpCloud;
 import it.geenee.cloud.http.HttpDownloader;
 import org.apache.commons.codec.binary.Hex;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.channels.FileChannel;
-import java.security.MessageDigest;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
 
 
 public class AwsStorage implements Storage {
 	final AwsCloud cloud;
 	final Cloud.Configuration configuration;
 	final String host;
-	static final DateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
 
 	AwsStorage(AwsCloud cloud, Cloud.Configuration configuration, String host) {
 		this.cloud = cloud;
@@ -48,29 +48,31 @@ public class AwsStorage implements Storage {
 	public String hash(FileChannel file) throws Exception {
 		long fileLength = file.size();
 		long partSize = this.configuration.partSize;
-		long partCount = (fileLength + partSize - 1) / partSize;
+		int partCount = (int) ((fileLength + partSize - 1) / partSize);
 		if (partCount <= 1) {
 			// single part: calc hex encoded md5 of file
 			return Hex.encodeHexString(HttpCloud.md5(file, 0, fileLength));
 		} else {
-			// multipart: calc md5 for each part
-			List<byte[]> partMds = new ArrayList<>();
-			for (long partIndex = 0; partIndex < partCount; ++partIndex) {
-				long offset = partIndex * partSize;
-				long length = Math.min(partSize, fileLength - offset);
-
-				// calc md5 of part
-				partMds.add(HttpCloud.md5(file, offset, length));
-			}
-
-			// calc md5 of md5's of parts
-			MessageDigest md = MessageDigest.getInstance("MD5");
-			for (byte[] partMd : partMds) {
-				md.update(partMd);
+			// multipart: calc md5 for each part in parallel (reads with explicit position are thread safe)
+			byte[][] partMds = new byte[partCount][];
+			try {
+				IntStream.range(0, partCount).parallel().forEach(partIndex -> {
+					long offset = partIndex * partSize;
+					long length = Math.min(partSize, fileLength - offset);
+
+					// calc md5 of part
+					try {
+						partMds[partIndex] = HttpCloud.md5(file, offset, length);
+					} catch (Exception e) {
+						throw new CompletionException(e);
+					}
+				});
+			} catch (CompletionException e) {
+				throw (Exception) e.getCause();
 			}
 
-			// return hex encoded md5 with part count
-			return Hex.encodeHexString(md.digest()) + '-' + Long.toString(partCount);
+			// calc md5 of md5's of parts with part count
+			return this.cloud.combineHash(partMds, true);
 		}
 	}
 
@@ -80,162 +82,185 @@ public class AwsStorage implements Storage {
 	}
 
 	@Override
-	public Transfer startDownload(FileChannel file, String remotePath, String version) {
-		return new HttpDownloader(this.cloud, this.configuration, file, this.host, remotePath, version);
+	public Transfer startDownload(FileChannel file, String remotePath, String version, String hash) {
+		return new HttpDownloader(this.cloud, this.configuration, file, this.host, remotePath, version, hash);
+	}
+
+	@Override
+	public Transfer startResumableDownload(FileChannel file, File journal, String remotePath, String version) {
+		return new HttpDownloader(this.cloud, this.configuration, file, this.host, remotePath, version, null, journal);
 	}
 
 	@Override
 	public Transfer startUpload(FileChannel file, String remotePath) {
-		return AwsUploader.create(this.cloud, this.configuration, file, this.host, remotePath);
+		Transfer transfer = AwsUploader.create(this.cloud, this.configuration, file, this.host, remotePath);
+		invalidateWhenDone(transfer, remotePath);
+		return transfer;
+	}
+
+	@Override
+	public Transfer startUpload(FileChannel file, String remotePath, boolean skipIdentical) {
+		if (!skipIdentical)
+			return startUpload(file, remotePath);
+		Transfer transfer = AwsUploader.create(this.cloud, this.configuration, file, this.host, remotePath, () -> hash(file), null, true);
+		invalidateWhenDone(transfer, remotePath);
+		return transfer;
+	}
+
+	@Override
+	public Transfer startUpload(FileChannel file, String remotePath, String remoteHash) {
+		Transfer transfer = AwsUploader.create(this.cloud, this.configuration, file, this.host, remotePath, () -> hash(file), remoteHash, false);
+		invalidateWhenDone(transfer, remotePath);
+		return transfer;
+	}
+
+	@Override
+	public Future<BatchUploadReport> startUpload(Map<String, byte[]> files) {
+		return new AwsBatchUpload(this, files);
+	}
+
+	@Override
+	public Future<BatchUploadReport> startJournaledUpload(Map<String, File> files, File journal) {
+		return new AwsJournaledUpload(this, files, journal);
 	}
 
 	@Override
 	public Future<FileInfo> startGetInfo(String remotePath, String version) {
-		return new AwsGetFileInfo(this.cloud, this.configuration, this.host, remotePath, version);
+		return cached("info:" + version, remotePath, false,
+				() -> new AwsGetFileInfo(this.cloud, this.configuration, this.host, remotePath, version),
+				fileInfo -> fileInfo);
 	}
 
 	@Override
-	public Future<String[]> startList(final String remotePath) {
-		final String urlPath = encodePathPrefix(remotePath);
-		return new AwsRequest<String[]>(this.cloud, this.configuration, this.host, HttpMethod.GET, urlPath) {
-			String[] list = new String[0];
+	public Future<Map<String, FileInfo>> startGetInfo(Collection<String> remotePaths) {
+		return new AwsBatchGetInfo(this, remotePaths);
+	}
+
+	@Override
+	public Future<String[]> startList(String remotePath) {
+		return cached("list", remotePath, true, () -> requestList(remotePath), String[]::clone);
+	}
+
+	Future<String[]> requestList(final String remotePath) {
+		// http://docs.aws.amazon.com/AmazonS3/latest/API/v2-RESTBucketGET.html
+		final String urlPath = HttpCloud.addQuery(encodePathPrefix(remotePath), "list-type", 2);
+		return new AwsXmlRequest<String[], ListBucketResult.Decoder>(this.cloud, this.configuration, this.host, HttpMethod.GET, urlPath) {
+			final List<String> list = new ArrayList<>();
 
 			@Override
-			protected void success(InputStream content) throws Exception {
-				// parse xml
-				JAXBContext jc = JAXBContext.newInstance(ListBucketResult.class);
-				Unmarshaller unmarshaller = jc.createUnmarshaller();
-				ListBucketResult result = (ListBucketResult) unmarshaller.unmarshal(content);
+			protected ListBucketResult.Decoder createDecoder() {
+				return new ListBucketResult.Decoder();
+			}
 
-				// copy file entries to map
+			@Override
+			protected String getNextPage(ListBucketResult.Decoder decoder) {
+				return decoder.entries ? getNextPath(urlPath, decoder.result) : null;
+			}
+
+			@Override
+			protected void success(ListBucketResult.Decoder decoder) throws Exception {
+				ListBucketResult result = decoder.result;
+
+				// copy file entries to list
 				if (result.contents != null) {
-					int i = this.list.length;
-					this.list = Arrays.copyOf(this.list, i + result.contents.size());
 					for (ListBucketResult.Entry entry : result.contents) {
-						this.list[i++] = getPath(entry.key, remotePath);
+						this.list.add(getPath(entry.key, remotePath));
 					}
 				}
 
 				// either repeat or finished
-				if (result.isTruncated && result.contents != null) {
-					String marker = result.contents.get(result.contents.size()-1).key;
-					request(HttpMethod.GET, HttpCloud.addQuery(urlPath, "marker", marker));
+				String nextPath = getNextPath(urlPath, result);
+				if (nextPath != null) {
+					request(HttpMethod.GET, nextPath);
 				} else {
-					setSuccess(this.list);
+					setSuccess(this.list.toArray(new String[this.list.size()]));
 				}
 			}
 		};
 	}
 
 	@Override
-	public Future<FileInfo[]> startList(final String remotePath, final ListMode mode) {
+	public Future<FileInfo[]> startList(String remotePath, ListMode mode) {
+		return cached("list:" + mode, remotePath, true, () -> requestList(remotePath, mode), FileInfo[]::clone);
+	}
+
+	Future<FileInfo[]> requestList(String remotePath, ListMode mode) {
+		List<FileInfo> list = new ArrayList<>();
+		return requestList(remotePath, mode, toSink(list), () -> list.toArray(new FileInfo[list.size()]));
+	}
+
+	@Override
+	public Future<FileList> startFileList(String remotePath, ListMode mode) {
+		FileList fileList = new FileList();
+		return requestList(remotePath, mode, fileList::add, () -> {
+			fileList.trim();
+			return fileList;
+		});
+	}
+
+	/**
+	 * List all pages and pass the files to a sink
+	 * @param sink receives the files of each page
+	 * @param result creates the result when all pages are done
+	 * @return future for the result
+	 */
+	<V> Future<V> requestList(final String remotePath, final ListMode mode, final FileSink sink, final Supplier<V> result) {
 		if (mode == ListMode.UNVERSIONED) {
-			// http://docs.aws.amazon.com/AmazonS3/latest/API/RESTBucketGET.html
-			final String urlPath = encodePathPrefix(remotePath);
-			return new AwsRequest<FileInfo[]>(this.cloud, this.configuration, this.host, HttpMethod.GET, urlPath) {
-				FileInfo[] list = new FileInfo[0];
+			// http://docs.aws.amazon.com/AmazonS3/latest/API/v2-RESTBucketGET.html
+			final String urlPath = HttpCloud.addQuery(encodePathPrefix(remotePath), "list-type", 2);
+			return new AwsXmlRequest<V, ListBucketResult.Decoder>(this.cloud, this.configuration, this.host, HttpMethod.GET, urlPath) {
+				@Override
+				protected ListBucketResult.Decoder createDecoder() {
+					return new ListBucketResult.Decoder();
+				}
 
 				@Override
-				protected void success(InputStream content) throws Exception {
-					// parse xml
-					JAXBContext jc = JAXBContext.newInstance(ListBucketResult.class);
-					Unmarshaller unmarshaller = jc.createUnmarshaller();
-					ListBucketResult result = (ListBucketResult) unmarshaller.unmarshal(content);
-
-					// copy file entries to list
-					if (result.contents != null) {
-						int i = this.list.length;
-						this.list = Arrays.copyOf(this.list, i + result.contents.size());
-						for (ListBucketResult.Entry entry : result.contents) {
-							this.list[i++] = new FileInfo(
-									getPath(entry.key, remotePath),
-									AwsCloud.getHash(entry.eTag),
-									entry.size,
-									DATE_FORMAT.parse(entry.lastModified).getTime(),
-									null,
-									true);
-						}
-					}
+				protected String getNextPage(ListBucketResult.Decoder decoder) {
+					return decoder.entries ? getNextPath(urlPath, decoder.result) : null;
+				}
+
+				@Override
+				protected void success(ListBucketResult.Decoder decoder) throws Exception {
+					ListBucketResult listBucketResult = decoder.result;
+
+					// pass file entries to sink
+					addFileInfos(listBucketResult, remotePath, sink);
 
 					// either repeat or finished
-					if (result.isTruncated && result.contents != null) {
-						String marker = result.contents.get(result.contents.size() - 1).key;
-						request(HttpMethod.GET, HttpCloud.addQuery(urlPath, "marker", marker));
+					String nextPath = getNextPath(urlPath, listBucketResult);
+					if (nextPath != null) {
+						request(HttpMethod.GET, nextPath);
 					} else {
-						setSuccess(this.list);
+						setSuccess(result.get());
 					}
 				}
 			};
 		} else {
 			// http://docs.aws.amazon.com/AmazonS3/latest/API/RESTBucketGETVersion.html
 			final String urlPath = HttpCloud.addQuery(encodePathPrefix(remotePath), "versions");
-			return new AwsRequest<FileInfo[]>(this.cloud, this.configuration, this.host, HttpMethod.GET, urlPath) {
-				FileInfo[] list = new FileInfo[0];
+			return new AwsXmlRequest<V, ListVersionsResult.Decoder>(this.cloud, this.configuration, this.host, HttpMethod.GET, urlPath) {
+				@Override
+				protected ListVersionsResult.Decoder createDecoder() {
+					return new ListVersionsResult.Decoder();
+				}
 
 				@Override
-				protected void success(InputStream content) throws Exception {
-					// parse xml
-					JAXBContext jc = JAXBContext.newInstance(ListVersionsResult.class);
-					Unmarshaller unmarshaller = jc.createUnmarshaller();
-					ListVersionsResult result = (ListVersionsResult) unmarshaller.unmarshal(content);
-
-					// count number of new entries
-					int count = 0;
-					if (result.versions != null) {
-						for (ListVersionsResult.Version version : result.versions) {
-							if (version.isLatest || mode == ListMode.VERSIONED_ALL || mode == ListMode.VERSIONED_DELETED_ALL) {
-								++count;
-							}
-						}
-					}
-					if (result.deleteMarkers != null && (mode == ListMode.VERSIONED_DELETEED_LATEST || mode == ListMode.VERSIONED_DELETED_ALL)) {
-						for (ListVersionsResult.DeleteMarker deleteMarker : result.deleteMarkers) {
-							if (deleteMarker.isLatest || mode == ListMode.VERSIONED_DELETED_ALL) {
-								++count;
-							}
-						}
-					}
+				protected String getNextPage(ListVersionsResult.Decoder decoder) {
+					return decoder.entries && decoder.result.isTruncated ? getNextVersionsPath(urlPath, decoder.result) : null;
+				}
 
-					// resize array
-					int i = this.list.length;
-					this.list = Arrays.copyOf(this.list, i + count);
-
-					// copy file entries to list
-					if (result.versions != null) {
-						for (ListVersionsResult.Version version : result.versions) {
-							if (version.isLatest || mode == ListMode.VERSIONED_ALL || mode == ListMode.VERSIONED_DELETED_ALL) {
-								this.list[i++] = new FileInfo(
-										getPath(version.key, remotePath),
-										AwsCloud.getHash(version.eTag),
-										version.size,
-										DATE_FORMAT.parse(version.lastModified).getTime(),
-										version.versionId,
-										version.isLatest);
-							}
-						}
-					}
-					if (result.deleteMarkers != null && (mode == ListMode.VERSIONED_DELETEED_LATEST || mode == ListMode.VERSIONED_DELETED_ALL)) {
-						for (ListVersionsResult.DeleteMarker deleteMarker : result.deleteMarkers) {
-							if (deleteMarker.isLatest || mode == ListMode.VERSIONED_DELETED_ALL) {
-								this.list[i++] = new FileInfo(
-										getPath(deleteMarker.key, remotePath),
-										null,
-										0,
-										DATE_FORMAT.parse(deleteMarker.lastModified).getTime(),
-										deleteMarker.versionId,
-										deleteMarker.isLatest);
-							}
-						}
-					}
+				@Override
+				protected void success(ListVersionsResult.Decoder decoder) throws Exception {
+					ListVersionsResult listVersionsResult = decoder.result;
+
+					// pass file entries to sink
+					addFileInfos(listVersionsResult, remotePath, mode, sink);
 
 					// either repeat or finished
-					if (result.isTruncated) {
-						String p = urlPath;
-						p = HttpCloud.addQuery(p, "key-marker", result.keyMarker);
-						p = HttpCloud.addQuery(p, "version-id-marker", result.versionIdMarker);
-						request(HttpMethod.GET, p);
+					if (listVersionsResult.isTruncated) {
+						request(HttpMethod.GET, getNextVersionsPath(urlPath, listVersionsResult));
 					} else {
-						setSuccess(list);
+						setSuccess(result.get());
 					}
 				}
 			};
@@ -243,17 +268,82 @@ public class AwsStorage implements Storage {
 	}
 
 	@Override
-	public Future<Map<String, String>> startListHashes(final String remotePath) {
-		final String urlPath = encodePathPrefix(remotePath);
-		return new AwsRequest<Map<String, String>>(this.cloud, this.configuration, this.host, HttpMethod.GET, urlPath) {
-			final Map<String, String> map = new HashMap<>();
+	public Future<DirectoryInfo> startListDirectory(final String remotePath) {
+		// http://docs.aws.amazon.com/AmazonS3/latest/API/v2-RESTBucketGET.html
+		final String urlPath = HttpCloud.addQuery(HttpCloud.addQuery(encodePathPrefix(remotePath), "list-type", 2), "delimiter", "/");
+		return new AwsXmlRequest<DirectoryInfo, ListBucketResult.Decoder>(this.cloud, this.configuration, this.host, HttpMethod.GET, urlPath) {
+			final List<FileInfo> files = new ArrayList<>();
+			final List<String> directories = new ArrayList<>();
 
 			@Override
-			protected void success(InputStream content) throws Exception {
-				// parse xml
-				JAXBContext jc = JAXBContext.newInstance(ListBucketResult.class);
-				Unmarshaller unmarshaller = jc.createUnmarshaller();
-				ListBucketResult result = (ListBucketResult) unmarshaller.unmarshal(content);
+			protected ListBucketResult.Decoder createDecoder() {
+				return new ListBucketResult.Decoder();
+			}
+
+			@Override
+			protected String getNextPage(ListBucketResult.Decoder decoder) {
+				return decoder.entries ? getNextPath(urlPath, decoder.result) : null;
+			}
+
+			@Override
+			protected void success(ListBucketResult.Decoder decoder) throws Exception {
+				ListBucketResult result = decoder.result;
+
+				// copy file entries and common prefixes to lists
+				addFileInfos(result, remotePath, this.files);
+				if (result.commonPrefixes != null) {
+					for (ListBucketResult.CommonPrefix commonPrefix : result.commonPrefixes) {
+						this.directories.add(getPath(commonPrefix.prefix, remotePath));
+					}
+				}
+
+				// either repeat or finished
+				String nextPath = getNextPath(urlPath, result);
+				if (nextPath != null) {
+					request(HttpMethod.GET, nextPath);
+				} else {
+					setSuccess(new DirectoryInfo(remotePath,
+							this.files.toArray(new FileInfo[this.files.size()]),
+							this.directories.toArray(new String[this.directories.size()])));
+				}
+			}
+		};
+	}
+
+	@Override
+	public Future<FileInfo[]> startParallelList(String remotePath) {
+		return new AwsParallelList(this, remotePath);
+	}
+
+	@Override
+	public Listing<FileInfo> listPages(String remotePath, ListMode mode) {
+		return new AwsListing(this, remotePath, mode);
+	}
+
+	@Override
+	public Future<Map<String, String>> startListHashes(String remotePath) {
+		return cached("hashes", remotePath, true, () -> requestListHashes(remotePath), map -> new FileHashMap((FileHashMap) map));
+	}
+
+	Future<Map<String, String>> requestListHashes(final String remotePath) {
+		// http://docs.aws.amazon.com/AmazonS3/latest/API/v2-RESTBucketGET.html
+		final String urlPath = HttpCloud.addQuery(encodePathPrefix(remotePath), "list-type", 2);
+		return new AwsXmlRequest<Map<String, String>, ListBucketResult.Decoder>(this.cloud, this.configuration, this.host, HttpMethod.GET, urlPath) {
+			final FileHashMap map = new FileHashMap();
+
+			@Override
+			protected ListBucketResult.Decoder createDecoder() {
+				return new ListBucketResult.Decoder();
+			}
+
+			@Override
+			protected String getNextPage(ListBucketResult.Decoder decoder) {
+				return decoder.entries ? getNextPath(urlPath, decoder.result) : null;
+			}
+
+			@Override
+			protected void success(ListBucketResult.Decoder decoder) throws Exception {
+				ListBucketResult result = decoder.result;
 
 				// copy file entries to map
 				if (result.contents != null) {
@@ -263,10 +353,11 @@ public class AwsStorage implements Storage {
 				}
 
 				// either repeat or finished
-				if (result.isTruncated) {
-					String marker = result.contents.get(result.contents.size()-1).key;
-					request(HttpMethod.GET, HttpCloud.addQuery(urlPath, "marker", marker));
+				String nextPath = getNextPath(urlPath, result);
+				if (nextPath != null) {
+					request(HttpMethod.GET, nextPath);
 				} else {
+					this.map.trim();
 					setSuccess(this.map);
 				}
 			}
@@ -278,13 +369,20 @@ public class AwsStorage implements Storage {
 		// http://docs.aws.amazon.com/AmazonS3/latest/API/mpUploadListMPUpload.html
 		final String urlPath = HttpCloud.addQuery(encodePathPrefix(remotePath), "uploads");
 		final List<UploadInfo> list = new ArrayList<>();
-		return new AwsRequest<List<UploadInfo>>(this.cloud, this.configuration, this.host, HttpMethod.GET, urlPath) {
+		return new AwsXmlRequest<List<UploadInfo>, ListMultipartUploadsResult.Decoder>(this.cloud, this.configuration, this.host, HttpMethod.GET, urlPath) {
 			@Override
-			protected void success(InputStream content) throws Exception {
-				// parse xml
-				JAXBContext jc = JAXBContext.newInstance(ListMultipartUploadsResult.class);
-				Unmarshaller unmarshaller = jc.createUnmarshaller();
-				ListMultipartUploadsResult result = (ListMultipartUploadsResult) unmarshaller.unmarshal(content);
+			protected ListMultipartUploadsResult.Decoder createDecoder() {
+				return new ListMultipartUploadsResult.Decoder();
+			}
+
+			@Override
+			protected String getNextPage(ListMultipartUploadsResult.Decoder decoder) {
+				return decoder.entries && decoder.result.isTruncated ? getNextUploadsPath(urlPath, decoder.result) : null;
+			}
+
+			@Override
+			protected void success(ListMultipartUploadsResult.Decoder decoder) throws Exception {
+				ListMultipartUploadsResult result = decoder.result;
 
 				// copy file entries to list
 				if (result.uploads != null) {
@@ -292,16 +390,13 @@ public class AwsStorage implements Storage {
 						list.add(new UploadInfo(
 								getPath(upload.key, remotePath),
 								upload.uploadId,
-								DATE_FORMAT.parse(upload.initiated).getTime()));
+								HttpCloud.parseTimestamp(upload.initiated)));
 					}
 				}
 
 				// either repeat or finished
 				if (result.isTruncated) {
-					String p = urlPath;
-					p = HttpCloud.addQuery(p, "key-marker", result.nextKeyMarker);
-					p = HttpCloud.addQuery(p, "upload-id-marker", result.nextUploadIdMarker);
-					request(HttpMethod.GET, p);
+					request(HttpMethod.GET, getNextUploadsPath(urlPath, result));
 				} else {
 					setSuccess(list);
 				}
@@ -315,12 +410,26 @@ public class AwsStorage implements Storage {
 		// http://docs.aws.amazon.com/AmazonS3/latest/API/RESTObjectDELETE.html
 		String urlPathAndVersion = this.cloud.addVersion(HttpCloud.encodePath('/' + this.configuration.prefix + remotePath), version);
 
-		return new AwsRequest<Void>(this.cloud, this.configuration, this.host, HttpMethod.DELETE, urlPathAndVersion) {
+		Future<Void> future = new AwsRequest<Void>(this.cloud, this.configuration, this.host, HttpMethod.DELETE, urlPathAndVersion) {
 			@Override
 			protected void success(InputStream content) throws Exception {
 				setSuccess(null);
 			}
 		};
+		invalidateWhenDone(future, remotePath);
+		return future;
+	}
+
+	@Override
+	public Future<Map<String, Throwable>> startDelete(Collection<String> remotePaths) {
+		// http://docs.aws.amazon.com/AmazonS3/latest/API/multiobjectdeleteapi.html
+		return new AwsBatchDelete<>(this, remotePaths, remotePath -> this.configuration.prefix + remotePath, remotePath -> null);
+	}
+
+	@Override
+	public Future<Map<FileInfo, Throwable>> startDeleteFiles(String remotePath, FileInfo[] fileInfos) {
+		return new AwsBatchDelete<>(this, Arrays.asList(fileInfos), fileInfo -> this.configuration.prefix + remotePath + fileInfo.path,
+				fileInfo -> fileInfo.version);
 	}
 
 	@Override
@@ -336,8 +445,87 @@ public class AwsStorage implements Storage {
 		};
 	}
 
+	@Override
+	public Future<UploadCleanupReport> startDeleteUploads(String remotePath, long timestamp) {
+		return new AwsUploadCleanup(this, remotePath, timestamp);
+	}
+
+	@Override
+	public Future<RestoreReport> startRestore(String remotePath, long timestamp) {
+		return new AwsRestore(this, remotePath, timestamp);
+	}
+
 	// helpers
 
+	/**
+	 * Copy a file on the server side
+	 * http://docs.aws.amazon.com/AmazonS3/latest/API/RESTObjectCOPY.html
+	 * @param sourcePath remote path of source file
+	 * @param version version of source file, null for current version
+	 * @param remotePath remote path of destination file
+	 * @return future that completes when the file is copied
+	 */
+	Future<Void> requestCopy(String sourcePath, String version, String remotePath) {
+		String urlPath = HttpCloud.encodePath('/' + this.configuration.prefix + remotePath);
+		HttpHeaders headers = new DefaultHttpHeaders();
+		headers.set("x-amz-copy-source", this.cloud.addVersion(HttpCloud.encodePath('/' + this.configuration.prefix + sourcePath), version));
+
+		Future<Void> future = new AwsRequest<Void>(this.cloud, this.configuration, this.host, HttpMethod.PUT, urlPath, headers) {
+			@Override
+			protected void success(InputStream content) throws Exception {
+				// a copy can fail after the response status 200 was sent, then the content is an error
+				S3Error.Decoder decoder = new S3Error.Decoder();
+				decoder.decode(content);
+				S3Error error = decoder.error;
+				if (error.code != null)
+					throw new IOException("Copy failed: " + error.code + ", " + error.message);
+				setSuccess(null);
+			}
+		};
+		invalidateWhenDone(future, remotePath);
+		return future;
+	}
+
+	/**
+	 * Get a result from the metadata cache or start a request and add its result to the cache
+	 * @param operation operation and its parameters except the remote path, e.g. "list:UNVERSIONED"
+	 * @param remotePath
+	 * @param prefix true if the result depends on all files that have the remote path as prefix
+	 * @param request starts the request
+	 * @param copy copies a result so that the cached result can not be modified by the caller
+	 * @return future for the result
+	 */
+	<V> Future<V> cached(String operation, String remotePath, boolean prefix, Supplier<Future<V>> request, UnaryOperator<V> copy) {
+		MetadataCache metadataCache = this.configuration.metadataCache;
+		if (metadataCache == null)
+			return request.get();
+
+		// the key contains the prefix and the remote path separately as both determine the paths in the result
+		String key = operation + '\n' + this.configuration.prefix + '\n' + remotePath;
+		String path = this.configuration.prefix + remotePath;
+		@SuppressWarnings("unchecked")
+		V value = (V) metadataCache.get(key);
+		if (value != null)
+			return this.cloud.globals.eventLoopGroup.next().newSucceededFuture(copy.apply(value));
+
+		long generation = metadataCache.getGeneration();
+		Future<V> future = request.get();
+		future.addListener(f -> {
+			if (f.isSuccess())
+				metadataCache.put(key, path, prefix, copy.apply(future.getNow()), generation);
+		});
+		return future;
+	}
+
+	// invalidate cached results that depend on the given file when an upload or delete is done
+	void invalidateWhenDone(Future<?> future, String remotePath) {
+		MetadataCache metadataCache = this.configuration.metadataCache;
+		if (metadataCache != null) {
+			String path = this.configuration.prefix + remotePath;
+			future.addListener(f -> metadataCache.invalidate(path));
+		}
+	}
+
 	String encodePathPrefix(String remotePath) {
 		if (!this.configuration.prefix.isEmpty())
 			remotePath = this.configuration.prefix + remotePath;
@@ -352,6 +540,92 @@ public class AwsStorage implements Storage {
 		return pathAndQuery;
 	}
 
+	// get path and query for the next page of a listing (version 2) or null if this is the last page
+	static String getNextPath(String urlPath, ListBucketResult result) {
+		if (!result.isTruncated || result.nextContinuationToken == null)
+			return null;
+		return HttpCloud.addQuery(urlPath, "continuation-token", result.nextContinuationToken);
+	}
+
+	// get path and query for the next page of a versioned listing
+	static String getNextVersionsPath(String urlPath, ListVersionsResult result) {
+		String p = urlPath;
+		p = HttpCloud.addQuery(p, "key-marker", result.nextKeyMarker);
+		if (result.nextVersionIdMarker != null)
+			p = HttpCloud.addQuery(p, "version-id-marker", result.nextVersionIdMarker);
+		return p;
+	}
+
+	// receives the files of a listing
+	interface FileSink {
+		void add(String path, String hash, long size, long timestamp, String version, boolean latest);
+	}
+
+	static FileSink toSink(List<FileInfo> list) {
+		return (path, hash, size, timestamp, version, latest) -> list.add(new FileInfo(path, hash, size, timestamp, version, latest));
+	}
+
+	// get path and query for the next page of a list of incomplete uploads
+	static String getNextUploadsPath(String urlPath, ListMultipartUploadsResult result) {
+		String p = urlPath;
+		p = HttpCloud.addQuery(p, "key-marker", result.nextKeyMarker);
+		p = HttpCloud.addQuery(p, "upload-id-marker", result.nextUploadIdMarker);
+		return p;
+	}
+
+	// convert entries of a list bucket result to file infos
+	void addFileInfos(ListBucketResult result, String remotePath, List<FileInfo> list) {
+		addFileInfos(result, remotePath, toSink(list));
+	}
+
+	void addFileInfos(ListBucketResult result, String remotePath, FileSink sink) {
+		if (result.contents != null) {
+			for (ListBucketResult.Entry entry : result.contents) {
+				sink.add(
+						getPath(entry.key, remotePath),
+						AwsCloud.getHash(entry.eTag),
+						entry.size,
+						HttpCloud.parseTimestamp(entry.lastModified),
+						null,
+						true);
+			}
+		}
+	}
+
+	// convert versions and delete markers of a list versions result to file infos according to list mode
+	void addFileInfos(ListVersionsResult result, String remotePath, ListMode mode, List<FileInfo> list) {
+		addFileInfos(result, remotePath, mode, toSink(list));
+	}
+
+	void addFileInfos(ListVersionsResult result, String remotePath, ListMode mode, FileSink sink) {
+		if (result.versions != null) {
+			for (ListVersionsResult.Version version : result.versions) {
+				if (version.isLatest || mode == ListMode.VERSIONED_ALL || mode == ListMode.VERSIONED_DELETED_ALL) {
+					sink.add(
+							getPath(version.key, remotePath),
+							AwsCloud.getHash(version.eTag),
+							version.size,
+							HttpCloud.parseTimestamp(version.lastModified),
+							version.versionId,
+							version.isLatest);
+				}
+			}
+		}
+		if (result.deleteMarkers != null && (mode == ListMode.VERSIONED_DELETEED_LATEST || mode == ListMode.VERSIONED_DELETED_ALL)) {
+			for (ListVersionsResult.DeleteMarker deleteMarker : result.deleteMarkers) {
+				if (deleteMarker.isLatest || mode == ListMode.VERSIONED_DELETED_ALL) {
+					sink.add(
+							getPath(deleteMarker.key, remotePath),
+							null,
+							0,
+							HttpCloud.parseTimestamp(deleteMarker.lastModified),
+							deleteMarker.versionId,
+							deleteMarker.isLatest);
+				}
+			}
+		}
+	}
+
 	String getPath(String key, String remotePath) {
 		int pos = this.configuration.prefix.indexOf('/');
 		if (pos != -1)
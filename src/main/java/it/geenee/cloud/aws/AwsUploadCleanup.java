@@ -0,0 +1,109 @@
+package it.geenee.cloud.aws;
+
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.util.concurrent.Future;
+import it.geenee.cloud.*;
+import it.geenee.cloud.http.HttpCloud;
+
+import java.util.*;
+
+
+/**
+ * Deletes all incomplete uploads for files that have the given remote path as prefix and that were started before a
+ * point in time. The uploads are listed page by page and deleted in parallel as they are found, see AwsParallelActions
+ * http://docs.aws.amazon.com/AmazonS3/latest/API/mpUploadListMPUpload.html
+ */
+class AwsUploadCleanup extends AwsParallelActions<UploadCleanupReport, UploadInfo, Void> {
+	final AwsStorage storage;
+	final String remotePath;
+	final long timestamp;
+	final String urlPath;
+
+	// path and query of next page, null if there are no more pages
+	String nextPath;
+
+	// report
+	long kept = 0;
+	long deleted = 0;
+	final Map<UploadInfo, Throwable> failures = new LinkedHashMap<>();
+
+
+	AwsUploadCleanup(AwsStorage storage, String remotePath, long timestamp) {
+		super(storage);
+		this.storage = storage;
+		this.remotePath = remotePath;
+		this.timestamp = timestamp;
+		this.urlPath = HttpCloud.addQuery(storage.encodePathPrefix(remotePath), "uploads");
+		this.nextPath = this.urlPath;
+		schedule();
+	}
+
+	@Override
+	protected boolean hasPages() {
+		return this.nextPath != null;
+	}
+
+	@Override
+	protected void requestPage() {
+		AwsStorage storage = this.storage;
+		String pagePath;
+		synchronized (this) {
+			pagePath = this.nextPath;
+		}
+		Future<ListMultipartUploadsResult> future = new AwsXmlRequest<ListMultipartUploadsResult, ListMultipartUploadsResult.Decoder>(
+				storage.cloud, storage.configuration, storage.host, HttpMethod.GET, pagePath) {
+			@Override
+			protected ListMultipartUploadsResult.Decoder createDecoder() {
+				return new ListMultipartUploadsResult.Decoder();
+			}
+
+			@Override
+			protected void success(ListMultipartUploadsResult.Decoder decoder) throws Exception {
+				setSuccess(decoder.result);
+			}
+		};
+		future.addListener(f -> {
+			if (future.isSuccess())
+				pageReceived(future.getNow());
+			else
+				setFailed(future.cause());
+		});
+	}
+
+	@Override
+	protected Future<Void> start(UploadInfo uploadInfo) {
+		return this.storage.startDeleteUpload(this.remotePath + uploadInfo.path, uploadInfo.uploadId);
+	}
+
+	@Override
+	protected void done(UploadInfo uploadInfo, Future<Void> future) {
+		if (future.isSuccess())
+			++this.deleted;
+		else
+			this.failures.put(uploadInfo, future.cause());
+	}
+
+	@Override
+	protected UploadCleanupReport getResult() {
+		return new UploadCleanupReport(this.timestamp, this.kept, this.deleted, this.failures);
+	}
+
+	void pageReceived(ListMultipartUploadsResult result) {
+		synchronized (this) {
+			this.pageRequested = false;
+			if (result.uploads != null) {
+				for (ListMultipartUploadsResult.Upload upload : result.uploads) {
+					long timestamp = HttpCloud.parseTimestamp(upload.initiated);
+					if (timestamp < this.timestamp)
+						this.queue.add(new UploadInfo(this.storage.getPath(upload.key, this.remotePath), upload.uploadId, timestamp));
+					else
+						++this.kept;
+				}
+			}
+
+			// the markers of the next page stay valid when uploads of this page are deleted
+			this.nextPath = result.isTruncated ? AwsStorage.getNextUploadsPath(this.urlPath, result) : null;
+		}
+		schedule();
+	}
+}
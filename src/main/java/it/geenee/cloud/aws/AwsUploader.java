@@ -3,12 +3,14 @@ package it.geenee.cloud.aws;
 import java.io.*;
 import java.nio.channels.FileChannel;
 import java.util.Date;
+import java.util.concurrent.Callable;
 
 import io.netty.handler.codec.http.*;
 
 import it.geenee.cloud.*;
 import it.geenee.cloud.http.HttpCloud;
 import it.geenee.cloud.http.HttpTransfer;
+import it.geenee.cloud.http.UploadJournal;
 
 /**
  * AWS PUT Object
@@ -31,6 +33,37 @@ public class AwsUploader extends HttpTransfer {
 		}
 	}
 
+	/**
+	 * Create an upload that is skipped if the remote file is identical, see HttpTransfer.startUploadIfChanged()
+	 */
+	static HttpTransfer create(HttpCloud cloud, Cloud.Configuration configuration, FileChannel file, String host, String remotePath,
+			Callable<String> hash, String remoteHash, boolean head) {
+		String urlPath = HttpCloud.encodePath('/' + configuration.prefix + remotePath);
+		try {
+			long size = file.size();
+			if (size <= configuration.partSize)
+				return new AwsUploader(cloud, configuration, file, host, urlPath, remotePath, size, hash, remoteHash, head);
+			else
+				return new AwsMultipartUploader(cloud, configuration, file, host, urlPath, remotePath, size, hash, remoteHash, head);
+		} catch (IOException e) {
+			// return failed transfer
+			return new AwsUploader(cloud, configuration, file, host, urlPath, e);
+		}
+	}
+
+	/**
+	 * Create an upload that is recorded in an upload journal, see AwsMultipartUploader. The caller records the finished
+	 * upload
+	 */
+	static HttpTransfer create(HttpCloud cloud, Cloud.Configuration configuration, FileChannel file, String host,
+			UploadJournal journal, UploadJournal.Entry entry) {
+		String urlPath = HttpCloud.encodePath('/' + configuration.prefix + entry.remotePath);
+		if (entry.size <= configuration.partSize)
+			return new AwsUploader(cloud, configuration, file, host, urlPath, entry.remotePath, entry.size);
+		else
+			return new AwsMultipartUploader(cloud, configuration, file, host, urlPath, journal, entry);
+	}
+
 	private AwsUploader(HttpCloud cloud, Cloud.Configuration configuration, FileChannel file, String host, String urlPath, String remotePath, long size) {
 		super(cloud, configuration, file, host, urlPath);
 		this.remotePath = remotePath;
@@ -40,6 +73,16 @@ public class AwsUploader extends HttpTransfer {
 		startTransfer(size, null);
 	}
 
+	private AwsUploader(HttpCloud cloud, Cloud.Configuration configuration, FileChannel file, String host, String urlPath, String remotePath, long size,
+			Callable<String> hash, String remoteHash, boolean head) {
+		super(cloud, configuration, file, host, urlPath);
+		this.remotePath = remotePath;
+		this.size = size;
+
+		// start upload with one part if the remote file differs
+		startUploadIfChanged(remotePath, hash, remoteHash, head, () -> startTransfer(size, null));
+	}
+
 	private AwsUploader(HttpCloud cloud, Cloud.Configuration configuration, FileChannel file, String host, String urlPath, Throwable cause) {
 		super(cloud, configuration, file, host, urlPath);
 		setFailed(cause);
@@ -0,0 +1,148 @@
+package it.geenee.cloud.aws;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.*;
+import it.geenee.cloud.*;
+import it.geenee.cloud.http.HttpCloud;
+import it.geenee.cloud.http.HttpFuture;
+import it.geenee.cloud.http.XmlDecoder;
+
+/**
+ * Base class for requests with an xml response like list bucket objects and describe instances. The response is
+ * decoded while it arrives without buffering it. For paginated responses, the next page can be requested while the
+ * current page is still arriving (see getNextPage())
+ */
+abstract public class AwsXmlRequest<V, D extends XmlDecoder> extends HttpFuture<V> {
+
+	class PageHandler extends RequestHandler {
+		final HttpMethod method;
+		final String urlPath;
+		D decoder;
+
+		// true if the next page was requested in advance
+		boolean nextRequested = false;
+
+		// true if the response is decoded
+		boolean complete = false;
+
+		// false if the page was requested in advance and the previous page is not processed yet
+		boolean confirmed;
+
+		PageHandler(HttpMethod method, String urlPath, boolean confirmed) {
+			this.method = method;
+			this.urlPath = urlPath;
+			this.confirmed = confirmed;
+		}
+
+		@Override
+		public void channelActive(ChannelHandlerContext ctx) throws Exception {
+			// new decoder for each try
+			this.decoder = createDecoder();
+			super.channelActive(ctx);
+		}
+
+		@Override
+		protected FullHttpRequest getRequest() throws Exception {
+			return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, this.method, this.urlPath);
+		}
+
+		@Override
+		protected boolean receive(ByteBuf buf) throws Exception {
+			this.decoder.decode(buf);
+
+			// request next page as soon as it is known
+			if (!this.nextRequested) {
+				String nextUrlPath = getNextPage(this.decoder);
+				if (nextUrlPath != null)
+					this.nextRequested = prefetch(this.method, nextUrlPath);
+			}
+			return true;
+		}
+
+		@Override
+		protected void success(HttpResponse response) throws Exception {
+			synchronized (AwsXmlRequest.this) {
+				this.complete = true;
+				if (!this.confirmed)
+					return;
+			}
+			AwsXmlRequest.this.success(this.decoder);
+		}
+	}
+
+	// page that was requested in advance, null if none
+	PageHandler prefetched = null;
+
+
+	public AwsXmlRequest(HttpCloud cloud, Cloud.Configuration configuration, String host, HttpMethod method, String urlPath) {
+		super(cloud, configuration, host, true);
+		request(method, urlPath);
+	}
+
+	/**
+	 * Request a page. If the same page was already requested in advance, no new request is made
+	 * @param method http method
+	 * @param urlPath path and query
+	 */
+	void request(HttpMethod method, String urlPath) {
+		PageHandler prefetched;
+		synchronized (this) {
+			prefetched = this.prefetched;
+			this.prefetched = null;
+			if (prefetched != null && prefetched.method.equals(method) && prefetched.urlPath.equals(urlPath)) {
+				// process the page now if its response is already decoded, otherwise when it is decoded
+				prefetched.confirmed = true;
+				if (!prefetched.complete)
+					return;
+			} else {
+				// the page that was requested in advance is not needed, its response gets ignored
+				prefetched = null;
+			}
+		}
+		if (prefetched != null) {
+			try {
+				success(prefetched.decoder);
+			} catch (Exception e) {
+				setFailed(e);
+			}
+			return;
+		}
+		connect(new PageHandler(method, urlPath, true));
+	}
+
+	// request a page in advance, returns false if there already is a page that was requested in advance
+	boolean prefetch(HttpMethod method, String urlPath) {
+		PageHandler handler;
+		synchronized (this) {
+			if (this.prefetched != null || isDone())
+				return false;
+			handler = this.prefetched = new PageHandler(method, urlPath, false);
+		}
+		connect(handler);
+		return true;
+	}
+
+	/**
+	 * Gets called for each request to create the decoder for the response
+	 * @return decoder
+	 */
+	protected abstract D createDecoder();
+
+	/**
+	 * Gets called while the response of a paginated request arrives. Override to return the path and query of the next
+	 * page as soon as the decoder knows it, the next page is then requested while the current page is still arriving.
+	 * success() must request the same path and query for the next page
+	 * @param decoder decoder that contains the part of the response that has arrived so far
+	 * @return path and query of next page or null if unknown yet or if this is the last page
+	 */
+	protected String getNextPage(D decoder) {
+		return null;
+	}
+
+	/**
+	 * Gets called when the request was successful and the response is decoded. Pages are processed in request order
+	 * @param decoder decoder that contains the decoded response
+	 */
+	protected abstract void success(D decoder) throws Exception;
+}
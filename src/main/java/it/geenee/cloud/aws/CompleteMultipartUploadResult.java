@@ -1,5 +1,7 @@
 package it.geenee.cloud.aws;
 
+import it.geenee.cloud.http.XmlDecoder;
+
 import javax.xml.bind.annotation.*;
 import java.util.List;
 
@@ -20,4 +22,35 @@ public class CompleteMultipartUploadResult {
 
 	@XmlElement(name = "ETag")
 	public String eTag;
+
+	/**
+	 * Streaming decoder for CompleteMultipartUploadResult
+	 */
+	static class Decoder extends XmlDecoder {
+		final CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+
+		@Override
+		protected void startElement(String name, int depth) {
+		}
+
+		@Override
+		protected void endElement(String name, int depth, String text) {
+			if (depth == 2) {
+				switch (name) {
+					case "Location":
+						this.result.location = text;
+						break;
+					case "Bucket":
+						this.result.bucket = text;
+						break;
+					case "Key":
+						this.result.key = text;
+						break;
+					case "ETag":
+						this.result.eTag = text;
+						break;
+				}
+			}
+		}
+	}
 }
@@ -0,0 +1,37 @@
+package it.geenee.cloud.aws;
+
+import javax.xml.bind.annotation.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * http://docs.aws.amazon.com/AmazonS3/latest/API/multiobjectdeleteapi.html
+ */
+@XmlRootElement(name = "Delete")
+@XmlAccessorType(XmlAccessType.NONE)
+public class Delete {
+	// maximum number of objects per request
+	public static final int MAX_OBJECTS = 1000;
+
+	public static class ObjectIdentifier {
+		@XmlElement(name = "Key")
+		public String key;
+
+		@XmlElement(name = "VersionId")
+		public String versionId;
+	}
+
+	// only report errors
+	@XmlElement(name = "Quiet")
+	public boolean quiet = true;
+
+	@XmlElement(name = "Object")
+	public List<ObjectIdentifier> objects = new ArrayList<>();
+
+	public void addObject(String key, String versionId) {
+		ObjectIdentifier object = new ObjectIdentifier();
+		object.key = key;
+		object.versionId = versionId;
+		this.objects.add(object);
+	}
+}
@@ -0,0 +1,102 @@
+package it.geenee.cloud.aws;
+
+import it.geenee.cloud.http.XmlDecoder;
+
+import javax.xml.bind.annotation.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * http://docs.aws.amazon.com/AmazonS3/latest/API/multiobjectdeleteapi.html
+ */
+@XmlRootElement(name = "DeleteResult", namespace = "http://s3.amazonaws.com/doc/2006-03-01/")
+@XmlAccessorType(XmlAccessType.NONE)
+public class DeleteResult {
+
+	public static class Deleted {
+		@XmlElement(name = "Key")
+		public String key;
+
+		@XmlElement(name = "VersionId")
+		public String versionId;
+	}
+	@XmlElement(name = "Deleted")
+	public List<Deleted> deleted;
+
+	public static class Failure {
+		@XmlElement(name = "Key")
+		public String key;
+
+		@XmlElement(name = "VersionId")
+		public String versionId;
+
+		@XmlElement(name = "Code")
+		public String code;
+
+		@XmlElement(name = "Message")
+		public String message;
+	}
+	@XmlElement(name = "Error")
+	public List<Failure> errors;
+
+	/**
+	 * Streaming decoder for DeleteResult
+	 */
+	static class Decoder extends XmlDecoder {
+		final DeleteResult result = new DeleteResult();
+		Deleted deleted;
+		Failure error;
+
+		@Override
+		protected void startElement(String name, int depth) {
+			if (depth == 2) {
+				switch (name) {
+					case "Deleted":
+						if (this.result.deleted == null)
+							this.result.deleted = new ArrayList<>();
+						this.result.deleted.add(this.deleted = new Deleted());
+						break;
+					case "Error":
+						if (this.result.errors == null)
+							this.result.errors = new ArrayList<>();
+						this.result.errors.add(this.error = new Failure());
+						break;
+				}
+			}
+		}
+
+		@Override
+		protected void endElement(String name, int depth, String text) {
+			if (depth == 2) {
+				this.deleted = null;
+				this.error = null;
+			} else if (depth == 3) {
+				if (this.deleted != null) {
+					switch (name) {
+						case "Key":
+							this.deleted.key = text;
+							break;
+						case "VersionId":
+							this.deleted.versionId = text;
+							break;
+					}
+				} else if (this.error != null) {
+					switch (name) {
+						case "Key":
+							this.error.key = text;
+							break;
+						case "VersionId":
+							this.error.versionId = text;
+							break;
+						case "Code":
+							this.error.code = text;
+							break;
+						case "Message":
+							this.error.message = text;
+							break;
+					}
+				}
+			}
+		}
+	}
+}
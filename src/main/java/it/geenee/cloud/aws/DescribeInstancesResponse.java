@@ -1,5 +1,7 @@
 package it.geenee.cloud.aws;
 
+import it.geenee.cloud.http.XmlDecoder;
+
 import javax.xml.bind.annotation.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -62,4 +64,77 @@ public class DescribeInstancesResponse {
 
 	@XmlElement(name = "reservationSet")
 	public ReservationSet reservationSet;
+
+	/**
+	 * Streaming decoder for DescribeInstancesResponse
+	 */
+	static class Decoder extends XmlDecoder {
+		final DescribeInstancesResponse response = new DescribeInstancesResponse();
+		ReservationItem reservation;
+		InstanceItem instance;
+
+		@Override
+		protected void startElement(String name, int depth) {
+			// reservationSet/item/instancesSet/item
+			if (depth == 2 && name.equals("reservationSet")) {
+				this.response.reservationSet = new ReservationSet();
+				this.response.reservationSet.items = new ArrayList<>();
+			} else if (depth == 3 && name.equals("item") && this.response.reservationSet != null) {
+				this.reservation = new ReservationItem();
+				this.response.reservationSet.items.add(this.reservation);
+			} else if (depth == 4 && name.equals("instancesSet") && this.reservation != null) {
+				this.reservation.instancesSet = new InstancesSet();
+				this.reservation.instancesSet.items = new ArrayList<>();
+			} else if (depth == 5 && name.equals("item") && this.reservation != null && this.reservation.instancesSet != null) {
+				this.instance = new InstanceItem();
+				this.reservation.instancesSet.items.add(this.instance);
+			} else if (depth == 6 && name.equals("placement") && this.instance != null) {
+				this.instance.placement = new Placement();
+			}
+		}
+
+		@Override
+		protected void endElement(String name, int depth, String text) {
+			if (depth == 2) {
+				switch (name) {
+					case "requestId":
+						this.response.requestId = text;
+						break;
+					case "nextToken":
+						this.response.nextToken = text;
+						break;
+				}
+			} else if (depth == 3 && name.equals("item")) {
+				this.reservation = null;
+			} else if (depth == 4 && this.reservation != null) {
+				switch (name) {
+					case "reservationId":
+						this.reservation.reservationId = text;
+						break;
+					case "ownerId":
+						this.reservation.ownerId = text;
+						break;
+				}
+			} else if (depth == 5 && name.equals("item")) {
+				this.instance = null;
+			} else if (depth == 6 && this.instance != null) {
+				switch (name) {
+					case "instanceId":
+						this.instance.instanceId = text;
+						break;
+					case "imageId":
+						this.instance.imageId = text;
+						break;
+					case "privateIpAddress":
+						this.instance.privateIpAddress = text;
+						break;
+					case "ipAddress":
+						this.instance.ipAddress = text;
+						break;
+				}
+			} else if (depth == 7 && name.equals("availabilityZone") && this.instance != null && this.instance.placement != null) {
+				this.instance.placement.availabilityZone = text;
+			}
+		}
+	}
 }
@@ -1,5 +1,7 @@
 package it.geenee.cloud.aws;
 
+import it.geenee.cloud.http.XmlDecoder;
+
 import javax.xml.bind.annotation.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -37,4 +39,52 @@ public class DescribeTagsResponse {
 
 	@XmlElement(name = "tagSet")
 	public TagSet tagSet;
+
+	/**
+	 * Streaming decoder for DescribeTagsResponse
+	 */
+	static class Decoder extends XmlDecoder {
+		final DescribeTagsResponse response = new DescribeTagsResponse();
+		Item item;
+
+		@Override
+		protected void startElement(String name, int depth) {
+			if (depth == 2 && name.equals("tagSet")) {
+				this.response.tagSet = new TagSet();
+				this.response.tagSet.items = new ArrayList<>();
+			} else if (depth == 3 && name.equals("item") && this.response.tagSet != null) {
+				this.item = new Item();
+				this.response.tagSet.items.add(this.item);
+			}
+		}
+
+		@Override
+		protected void endElement(String name, int depth, String text) {
+			if (depth == 2) {
+				switch (name) {
+					case "requestId":
+						this.response.requestId = text;
+						break;
+					case "nextToken":
+						this.response.nextToken = text;
+						break;
+				}
+			} else if (depth == 4 && this.item != null) {
+				switch (name) {
+					case "resourceId":
+						this.item.resourceId = text;
+						break;
+					case "resourceType":
+						this.item.resourceType = text;
+						break;
+					case "key":
+						this.item.key = text;
+						break;
+					case "value":
+						this.item.value = text;
+						break;
+				}
+			}
+		}
+	}
 }
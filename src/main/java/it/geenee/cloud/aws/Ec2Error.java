@@ -1,6 +1,9 @@
 package it.geenee.cloud.aws;
 
+import it.geenee.cloud.http.XmlDecoder;
+
 import javax.xml.bind.annotation.*;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -28,4 +31,39 @@ public class Ec2Error {
 
 	@XmlElement(name = "Errors")
 	public Errors errors;
+
+	/**
+	 * Streaming decoder for Ec2Error
+	 */
+	static class Decoder extends XmlDecoder {
+		final Ec2Error response = new Ec2Error();
+		Error error;
+
+		@Override
+		protected void startElement(String name, int depth) {
+			if (depth == 2 && name.equals("Errors")) {
+				this.response.errors = new Errors();
+				this.response.errors.errors = new ArrayList<>();
+			} else if (depth == 3 && name.equals("Error") && this.response.errors != null) {
+				this.error = new Error();
+				this.response.errors.errors.add(this.error);
+			}
+		}
+
+		@Override
+		protected void endElement(String name, int depth, String text) {
+			if (depth == 2 && name.equals("RequestID")) {
+				this.response.requestId = text;
+			} else if (depth == 4 && this.error != null) {
+				switch (name) {
+					case "Code":
+						this.error.code = text;
+						break;
+					case "Message":
+						this.error.message = text;
+						break;
+				}
+			}
+		}
+	}
 }
@@ -1,5 +1,7 @@
 package it.geenee.cloud.aws;
 
+import it.geenee.cloud.http.XmlDecoder;
+
 import javax.xml.bind.annotation.*;
 import java.util.List;
 
@@ -17,4 +19,32 @@ public class InitiateMultipartUploadResult {
 
 	@XmlElement(name = "UploadId")
 	public String uploadId;
+
+	/**
+	 * Streaming decoder for InitiateMultipartUploadResult
+	 */
+	static class Decoder extends XmlDecoder {
+		final InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+
+		@Override
+		protected void startElement(String name, int depth) {
+		}
+
+		@Override
+		protected void endElement(String name, int depth, String text) {
+			if (depth == 2) {
+				switch (name) {
+					case "Bucket":
+						this.result.bucket = text;
+						break;
+					case "Key":
+						this.result.key = text;
+						break;
+					case "UploadId":
+						this.result.uploadId = text;
+						break;
+				}
+			}
+		}
+	}
 }
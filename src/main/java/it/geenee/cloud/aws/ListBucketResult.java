@@ -1,10 +1,14 @@
 package it.geenee.cloud.aws;
 
+import it.geenee.cloud.http.XmlDecoder;
+
 import javax.xml.bind.annotation.*;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * http://docs.aws.amazon.com/AmazonS3/latest/API/RESTBucketGET.html
+ * http://docs.aws.amazon.com/AmazonS3/latest/API/v2-RESTBucketGET.html
  */
 @XmlRootElement(name = "ListBucketResult", namespace = "http://s3.amazonaws.com/doc/2006-03-01/")
 @XmlAccessorType(XmlAccessType.NONE)
@@ -24,6 +28,20 @@ public class ListBucketResult {
 	@XmlElement(name = "IsTruncated")
 	public boolean isTruncated;
 
+	// list objects version 2
+
+	@XmlElement(name = "KeyCount")
+	public int keyCount;
+
+	@XmlElement(name = "ContinuationToken")
+	public String continuationToken;
+
+	@XmlElement(name = "NextContinuationToken")
+	public String nextContinuationToken;
+
+	@XmlElement(name = "StartAfter")
+	public String startAfter;
+
 	public static class Entry {
 		@XmlElement(name = "Key")
 		public String key;
@@ -46,4 +64,109 @@ public class ListBucketResult {
 	
 	@XmlElement(name = "Contents")
 	public List<Entry> contents;
+
+	public static class CommonPrefix {
+		@XmlElement(name = "Prefix")
+		public String prefix;
+	}
+
+	@XmlElement(name = "CommonPrefixes")
+	public List<CommonPrefix> commonPrefixes;
+
+	/**
+	 * Streaming decoder for ListBucketResult
+	 */
+	static class Decoder extends XmlDecoder {
+		final ListBucketResult result = new ListBucketResult();
+		Entry entry;
+		CommonPrefix commonPrefix;
+
+		// true when the first entry starts, then all elements that precede the entries (e.g. NextContinuationToken) are decoded
+		boolean entries = false;
+
+		@Override
+		protected void startElement(String name, int depth) {
+			if (depth == 2 && name.equals("Contents")) {
+				this.entry = new Entry();
+				this.entries = true;
+			} else if (depth == 2 && name.equals("CommonPrefixes")) {
+				this.commonPrefix = new CommonPrefix();
+				this.entries = true;
+			} else if (depth == 3 && name.equals("Owner") && this.entry != null) {
+				this.entry.owner = new User();
+			}
+		}
+
+		@Override
+		protected void endElement(String name, int depth, String text) {
+			ListBucketResult result = this.result;
+			if (depth == 2) {
+				switch (name) {
+					case "Name":
+						result.bucket = text;
+						break;
+					case "Prefix":
+						result.prefix = text;
+						break;
+					case "Marker":
+						result.marker = text;
+						break;
+					case "MaxKeys":
+						result.maxKeys = Integer.parseInt(text);
+						break;
+					case "IsTruncated":
+						result.isTruncated = Boolean.parseBoolean(text);
+						break;
+					case "KeyCount":
+						result.keyCount = Integer.parseInt(text);
+						break;
+					case "ContinuationToken":
+						result.continuationToken = text;
+						break;
+					case "NextContinuationToken":
+						result.nextContinuationToken = text;
+						break;
+					case "StartAfter":
+						result.startAfter = text;
+						break;
+					case "CommonPrefixes":
+						if (result.commonPrefixes == null)
+							result.commonPrefixes = new ArrayList<>();
+						result.commonPrefixes.add(this.commonPrefix);
+						this.commonPrefix = null;
+						break;
+					case "Contents":
+						if (result.contents == null)
+							result.contents = new ArrayList<>();
+						result.contents.add(this.entry);
+						this.entry = null;
+						break;
+				}
+			} else if (depth == 3 && this.entry != null) {
+				Entry entry = this.entry;
+				switch (name) {
+					case "Key":
+						entry.key = text;
+						break;
+					case "LastModified":
+						entry.lastModified = text;
+						break;
+					case "ETag":
+						entry.eTag = text;
+						break;
+					case "Size":
+						entry.size = Long.parseLong(text);
+						break;
+					case "StorageClass":
+						entry.storageClass = text;
+						break;
+				}
+			} else if (depth == 3 && this.commonPrefix != null) {
+				if (name.equals("Prefix"))
+					this.commonPrefix.prefix = text;
+			} else if (depth == 4 && this.entry != null && this.entry.owner != null) {
+				this.entry.owner.decode(name, text);
+			}
+		}
+	}
 }
@@ -1,6 +1,9 @@
 package it.geenee.cloud.aws;
 
+import it.geenee.cloud.http.XmlDecoder;
+
 import javax.xml.bind.annotation.*;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -53,4 +56,87 @@ public class ListMultipartUploadsResult {
 
 	@XmlElement(name = "Upload")
 	public List<Upload> uploads;
+
+	/**
+	 * Streaming decoder for ListMultipartUploadsResult
+	 */
+	static class Decoder extends XmlDecoder {
+		final ListMultipartUploadsResult result = new ListMultipartUploadsResult();
+		Upload upload;
+		User user;
+
+		// true when the first entry starts, then all elements that precede the entries (e.g. NextKeyMarker) are decoded
+		boolean entries = false;
+
+		@Override
+		protected void startElement(String name, int depth) {
+			if (depth == 2 && name.equals("Upload")) {
+				this.upload = new Upload();
+				this.entries = true;
+			} else if (depth == 3 && this.upload != null) {
+				switch (name) {
+					case "Initiator":
+						this.user = this.upload.initiator = new User();
+						break;
+					case "Owner":
+						this.user = this.upload.owner = new User();
+						break;
+				}
+			}
+		}
+
+		@Override
+		protected void endElement(String name, int depth, String text) {
+			ListMultipartUploadsResult result = this.result;
+			if (depth == 2) {
+				switch (name) {
+					case "Bucket":
+						result.bucket = text;
+						break;
+					case "KeyMarker":
+						result.keyMarker = text;
+						break;
+					case "UploadIdMarker":
+						result.uploadIdMarker = text;
+						break;
+					case "NextKeyMarker":
+						result.nextKeyMarker = text;
+						break;
+					case "NextUploadIdMarker":
+						result.nextUploadIdMarker = text;
+						break;
+					case "MaxUploads":
+						result.maxUploads = Integer.parseInt(text);
+						break;
+					case "IsTruncated":
+						result.isTruncated = Boolean.parseBoolean(text);
+						break;
+					case "Upload":
+						if (result.uploads == null)
+							result.uploads = new ArrayList<>();
+						result.uploads.add(this.upload);
+						this.upload = null;
+						break;
+				}
+			} else if (depth == 3 && this.upload != null) {
+				Upload upload = this.upload;
+				switch (name) {
+					case "Key":
+						upload.key = text;
+						break;
+					case "UploadId":
+						upload.uploadId = text;
+						break;
+					case "StorageClass":
+						upload.storageClass = text;
+						break;
+					case "Initiated":
+						upload.initiated = text;
+						break;
+				}
+			} else if (depth == 4 && this.user != null) {
+				this.user.decode(name, text);
+			}
+		}
+	}
 }
@@ -1,6 +1,9 @@
 package it.geenee.cloud.aws;
 
+import it.geenee.cloud.http.XmlDecoder;
+
 import javax.xml.bind.annotation.*;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -21,6 +24,12 @@ public class ListVersionsResult {
 	@XmlElement(name = "VersionIdMarker")
 	public String versionIdMarker;
 
+	@XmlElement(name = "NextKeyMarker")
+	public String nextKeyMarker;
+
+	@XmlElement(name = "NextVersionIdMarker")
+	public String nextVersionIdMarker;
+
 	@XmlElement(name = "MaxKeys")
 	public int maxKeys;
 
@@ -75,4 +84,127 @@ public class ListVersionsResult {
 
 	@XmlElement(name = "DeleteMarker")
 	public List<DeleteMarker> deleteMarkers;
+
+	/**
+	 * Streaming decoder for ListVersionsResult
+	 */
+	static class Decoder extends XmlDecoder {
+		final ListVersionsResult result = new ListVersionsResult();
+		Version version;
+		DeleteMarker deleteMarker;
+		User owner;
+
+		// true when the first entry starts, then all elements that precede the entries (e.g. NextKeyMarker) are decoded
+		boolean entries = false;
+
+		@Override
+		protected void startElement(String name, int depth) {
+			if (depth == 2) {
+				switch (name) {
+					case "Version":
+						this.version = new Version();
+						this.entries = true;
+						break;
+					case "DeleteMarker":
+						this.deleteMarker = new DeleteMarker();
+						this.entries = true;
+						break;
+				}
+			} else if (depth == 3 && name.equals("Owner")) {
+				this.owner = new User();
+				if (this.version != null)
+					this.version.owner = this.owner;
+				if (this.deleteMarker != null)
+					this.deleteMarker.owner = this.owner;
+			}
+		}
+
+		@Override
+		protected void endElement(String name, int depth, String text) {
+			ListVersionsResult result = this.result;
+			if (depth == 2) {
+				switch (name) {
+					case "Name":
+						result.bucket = text;
+						break;
+					case "Prefix":
+						result.prefix = text;
+						break;
+					case "KeyMarker":
+						result.keyMarker = text;
+						break;
+					case "VersionIdMarker":
+						result.versionIdMarker = text;
+						break;
+					case "NextKeyMarker":
+						result.nextKeyMarker = text;
+						break;
+					case "NextVersionIdMarker":
+						result.nextVersionIdMarker = text;
+						break;
+					case "MaxKeys":
+						result.maxKeys = Integer.parseInt(text);
+						break;
+					case "IsTruncated":
+						result.isTruncated = Boolean.parseBoolean(text);
+						break;
+					case "Version":
+						if (result.versions == null)
+							result.versions = new ArrayList<>();
+						result.versions.add(this.version);
+						this.version = null;
+						break;
+					case "DeleteMarker":
+						if (result.deleteMarkers == null)
+							result.deleteMarkers = new ArrayList<>();
+						result.deleteMarkers.add(this.deleteMarker);
+						this.deleteMarker = null;
+						break;
+				}
+			} else if (depth == 3 && this.version != null) {
+				Version version = this.version;
+				switch (name) {
+					case "Key":
+						version.key = text;
+						break;
+					case "VersionId":
+						version.versionId = text;
+						break;
+					case "IsLatest":
+						version.isLatest = Boolean.parseBoolean(text);
+						break;
+					case "LastModified":
+						version.lastModified = text;
+						break;
+					case "ETag":
+						version.eTag = text;
+						break;
+					case "Size":
+						version.size = Long.parseLong(text);
+						break;
+					case "StorageClass":
+						version.storageClass = text;
+						break;
+				}
+			} else if (depth == 3 && this.deleteMarker != null) {
+				DeleteMarker deleteMarker = this.deleteMarker;
+				switch (name) {
+					case "Key":
+						deleteMarker.key = text;
+						break;
+					case "VersionId":
+						deleteMarker.versionId = text;
+						break;
+					case "IsLatest":
+						deleteMarker.isLatest = Boolean.parseBoolean(text);
+						break;
+					case "LastModified":
+						deleteMarker.lastModified = text;
+						break;
+				}
+			} else if (depth == 4 && this.owner != null) {
+				this.owner.decode(name, text);
+			}
+		}
+	}
 }
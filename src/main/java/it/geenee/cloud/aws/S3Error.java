@@ -1,5 +1,7 @@
 package it.geenee.cloud.aws;
 
+import it.geenee.cloud.http.XmlDecoder;
+
 import javax.xml.bind.annotation.*;
 import java.util.List;
 
@@ -18,4 +20,32 @@ public class S3Error {
 
 	@XmlElement(name = "Message")
 	public String message;
+
+	/**
+	 * Streaming decoder for S3Error
+	 */
+	static class Decoder extends XmlDecoder {
+		final S3Error error = new S3Error();
+
+		@Override
+		protected void startElement(String name, int depth) {
+		}
+
+		@Override
+		protected void endElement(String name, int depth, String text) {
+			if (depth == 2) {
+				switch (name) {
+					case "RequestId":
+						this.error.requestId = text;
+						break;
+					case "Code":
+						this.error.code = text;
+						break;
+					case "Message":
+						this.error.message = text;
+						break;
+				}
+			}
+		}
+	}
 }
@@ -10,4 +10,17 @@ public class User {
 
 	@XmlElement(name = "DisplayName")
 	public String displayName;
+
+	// decode owner or initiator element, returns true if the element was consumed
+	boolean decode(String name, String text) {
+		switch (name) {
+			case "ID":
+				this.id = text;
+				return true;
+			case "DisplayName":
+				this.displayName = text;
+				return true;
+		}
+		return false;
+	}
 }
@@ -0,0 +1,84 @@
+package it.geenee.cloud.http;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+import it.geenee.cloud.FileInfo;
+
+
+/**
+ * Sidecar journal of a resumable download. The first line identifies the remote file (hash, size, part size and
+ * version), each following line contains the index of a part that was completely written to the local file
+ */
+class DownloadJournal {
+	final File path;
+
+	DownloadJournal(File path) {
+		this.path = path;
+	}
+
+	/**
+	 * Open the journal for the given remote file. If the journal exists and was written for a file with the same hash,
+	 * size and part size, the completed parts are returned. Otherwise a new journal is started
+	 * @param fileInfo info of remote file obtained at start of download
+	 * @param partSize size of download parts
+	 * @return set of indices of completed parts
+	 * @throws IOException
+	 */
+	synchronized BitSet open(FileInfo fileInfo, int partSize) throws IOException {
+		String header = fileInfo.hash + '\t' + fileInfo.size + '\t' + partSize + '\t' + (fileInfo.version == null ? "" : fileInfo.version);
+		BitSet completedParts = new BitSet();
+
+		// read existing journal
+		if (this.path.exists()) {
+			String[] lines = new String(Files.readAllBytes(this.path.toPath()), HttpCloud.UTF_8).split("\n", -1);
+
+			// last element is either empty or a partially written line, therefore ignore it
+			if (lines.length > 1 && isSameFile(lines[0], header)) {
+				for (int i = 1; i < lines.length - 1; ++i) {
+					completedParts.set(Integer.parseInt(lines[i]));
+				}
+			}
+		}
+
+		// (re)write journal so that a partially written line gets removed
+		StringBuilder b = new StringBuilder();
+		b.append(header).append('\n');
+		for (int partIndex = completedParts.nextSetBit(0); partIndex >= 0; partIndex = completedParts.nextSetBit(partIndex + 1)) {
+			b.append(partIndex).append('\n');
+		}
+		Files.write(this.path.toPath(), b.toString().getBytes(HttpCloud.UTF_8));
+		return completedParts;
+	}
+
+	/**
+	 * Record a completed part. The caller must make sure the part was written to the local file (e.g. using force())
+	 * @param partIndex index of completed part
+	 * @throws IOException
+	 */
+	synchronized void add(int partIndex) throws IOException {
+		Files.write(this.path.toPath(), (Integer.toString(partIndex) + '\n').getBytes(HttpCloud.UTF_8),
+				StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+	}
+
+	/**
+	 * Delete the journal after the download completed
+	 */
+	synchronized void delete() {
+		this.path.delete();
+	}
+
+	// helpers
+
+	static boolean isSameFile(String header1, String header2) {
+		// compare hash, size and part size but not version as the same content may have different versions
+		String[] fields1 = header1.split("\t", -1);
+		String[] fields2 = header2.split("\t", -1);
+		return fields1.length == fields2.length
+				&& fields1[0].equals(fields2[0])
+				&& fields1[1].equals(fields2[1])
+				&& fields1[2].equals(fields2[2]);
+	}
+}
@@ -103,10 +103,83 @@ public abstract class HttpCloud implements Cloud {
 		return md.digest();
 	}
 
+	/**
+	 * Parse an ISO 8601 timestamp as used by cloud APIs, e.g. "2009-10-12T17:50:30.000Z" or "2009-10-12T19:50:30+02:00".
+	 * Unlike DateFormat.parse() it does not allocate objects and is thread safe
+	 * @param s timestamp, fractions of a second beyond milliseconds are ignored and no time zone means UTC
+	 * @return number of milliseconds since January 1, 1970, 00:00:00 GMT
+	 * @throws IllegalArgumentException if the timestamp is invalid
+	 */
+	public static long parseTimestamp(CharSequence s) {
+		int length = s.length();
+		if (length < 19 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T' || s.charAt(13) != ':' || s.charAt(16) != ':')
+			throw new IllegalArgumentException("Invalid timestamp: " + s);
+		int year = parseDigits(s, 0, 4);
+		int month = parseDigits(s, 5, 2);
+		int day = parseDigits(s, 8, 2);
+		int hour = parseDigits(s, 11, 2);
+		int minute = parseDigits(s, 14, 2);
+		int second = parseDigits(s, 17, 2);
+		int pos = 19;
+
+		// fraction of second
+		int millis = 0;
+		if (pos < length && s.charAt(pos) == '.') {
+			++pos;
+			int scale = 100;
+			while (pos < length && s.charAt(pos) >= '0' && s.charAt(pos) <= '9') {
+				millis += (s.charAt(pos++) - '0') * scale;
+				scale /= 10;
+			}
+		}
+
+		// time zone offset in minutes
+		int offset = 0;
+		if (pos < length) {
+			char ch = s.charAt(pos);
+			if (ch == 'Z') {
+				++pos;
+			} else if ((ch == '+' || ch == '-') && pos + 6 == length && s.charAt(pos + 3) == ':') {
+				offset = parseDigits(s, pos + 1, 2) * 60 + parseDigits(s, pos + 4, 2);
+				if (ch == '-')
+					offset = -offset;
+				pos += 6;
+			}
+		}
+		if (pos != length || month < 1 || month > 12)
+			throw new IllegalArgumentException("Invalid timestamp: " + s);
+
+		// days since epoch, http://howardhinnant.github.io/date_algorithms.html#days_from_civil
+		int y = month <= 2 ? year - 1 : year;
+		int era = y / 400;
+		int yearOfEra = y - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		long days = era * 146097L + dayOfEra - 719468;
+
+		return ((days * 24 + hour) * 60 + minute - offset) * 60000L + second * 1000 + millis;
+	}
+
+	static int parseDigits(CharSequence s, int offset, int count) {
+		int value = 0;
+		for (int i = offset; i < offset + count; ++i) {
+			char ch = s.charAt(i);
+			if (ch < '0' || ch > '9')
+				throw new IllegalArgumentException("Invalid timestamp: " + s);
+			value = value * 10 + (ch - '0');
+		}
+		return value;
+	}
+
 	public static byte[] md5(FileChannel file, long offset, long length) throws Exception {
 		return hash("MD5", file, offset, length);
 	}
 
+	public static byte[] md5(byte[] data) throws Exception {
+		MessageDigest digest = MessageDigest.getInstance("MD5");
+		return digest.digest(data);
+	}
+
 	public static byte[] sha256(FileChannel file, long offset, long length) throws Exception {
 		return hash("SHA-256", file, offset, length);
 	}
@@ -197,6 +270,22 @@ public abstract class HttpCloud implements Cloud {
 	 */
 	public abstract String getHash(HttpHeaders headers);
 
+	/**
+	 * Get the number of parts from which the hash of a file was combined using combineHash()
+	 * @param headers http headers of the file
+	 * @return number of parts, 0 if the hash is the MD5 of the whole file, -1 if the hash is not calculated from the data
+	 * of the file (e.g. encrypted file)
+	 */
+	public abstract int getHashPartCount(HttpHeaders headers);
+
+	/**
+	 * Calculate the hash of a file from the MD5 hashes of its parts using the same algorithm as the cloud storage
+	 * @param partMd5s MD5 hashes of all parts of the file
+	 * @param multipart true if the file was uploaded in parts, false if it was uploaded at once (at most one part)
+	 * @return hash of file
+	 */
+	public abstract String combineHash(byte[][] partMd5s, boolean multipart) throws Exception;
+
 	/**
 	 * Get version id from headers
 	 * @param headers http headers
@@ -211,6 +300,14 @@ public abstract class HttpCloud implements Cloud {
 	 */
 	public abstract String addVersion(String urlPath, String version);
 
+	/**
+	 * Add a part number to the path of a file that was uploaded in parts to request only the given part
+	 * @param urlPath path of file
+	 * @param partNumber number of part, starting at 1
+	 * @return path and query, null if not supported by the cloud storage
+	 */
+	public abstract String addPartNumber(String urlPath, int partNumber);
+
 	static final char[] hex = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
 
 	/**
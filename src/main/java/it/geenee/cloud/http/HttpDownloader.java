@@ -1,19 +1,62 @@
 package it.geenee.cloud.http;
 
+import java.io.File;
+import java.io.IOException;
 import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
 
 import io.netty.handler.codec.http.*;
 
 import it.geenee.cloud.*;
 
 /**
- * Generic HTTP multipart downloader that uses standard HEAD and GET requests
+ * Generic HTTP multipart downloader that uses standard HEAD and GET requests. The downloaded data is verified against the
+ * hash of the remote file if the cloud can calculate it from the hashes of the downloaded parts. If a block cache is
+ * configured, parts are taken from the cache and downloaded parts are added to the cache
  */
 public class HttpDownloader extends HttpTransfer {
 
+	// minimum length of a range that is split off a slow part when a channel becomes idle
+	public static final int MIN_SPLIT_LENGTH = 1024 * 1024;
+
+	// journal of completed parts for resumable downloads, null if not resumable
+	final DownloadJournal journal;
+
+	// number of parts from which the hash of the remote file was combined, see HttpCloud.getHashPartCount()
+	int hashPartCount = -1;
+
+	// true when all parts are done and the download gets verified
+	boolean completing = false;
+
 	public HttpDownloader(HttpCloud cloud, Cloud.Configuration configuration, FileChannel file, String host,
 			final String remotePath, final String requestedVersion) {
+		this(cloud, configuration, file, host, remotePath, requestedVersion, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param localHash hash of the local file (e.g. from Storage.hash()). If it matches the hash of the remote file, the download
+	 * completes immediately without transferring data and without modifying the local file. May be null
+	 */
+	public HttpDownloader(HttpCloud cloud, Cloud.Configuration configuration, FileChannel file, String host,
+			final String remotePath, final String requestedVersion, final String localHash) {
+		this(cloud, configuration, file, host, remotePath, requestedVersion, localHash, null);
+	}
+
+	/**
+	 * Constructor
+	 * @param localHash hash of the local file (e.g. from Storage.hash()). If it matches the hash of the remote file, the download
+	 * completes immediately without transferring data and without modifying the local file. May be null
+	 * @param journalPath path of journal file that records completed parts. If the download gets interrupted, a new download
+	 * with the same journal only transfers the missing parts if the remote file is still the same. May be null
+	 */
+	public HttpDownloader(HttpCloud cloud, Cloud.Configuration configuration, FileChannel file, String host,
+			final String remotePath, final String requestedVersion, final String localHash, File journalPath) {
 		super(cloud, configuration, file, host, HttpCloud.encodePath('/' + configuration.prefix + remotePath));
+		this.journal = journalPath == null ? null : new DownloadJournal(journalPath);
+		this.minSplitLength = MIN_SPLIT_LENGTH;
 
 		final String urlPathAndVersion = cloud.addVersion(this.urlPath, requestedVersion);
 
@@ -35,7 +78,18 @@ public class HttpDownloader extends HttpTransfer {
 		connect(new RequestHandler() {
 			@Override
 			protected FullHttpRequest getRequest() throws Exception {
-				return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.HEAD, urlPathAndVersion);
+				FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.HEAD, urlPathAndVersion);
+
+				// conditional request: server responds with 304 (not modified) if the hash of the remote file is the local hash
+				// http://docs.aws.amazon.com/AmazonS3/latest/API/RESTObjectHEAD.html
+				if (localHash != null)
+					request.headers().set(HttpHeaders.Names.IF_NONE_MATCH, '"' + localHash + '"');
+				return request;
+			}
+
+			@Override
+			protected boolean isSuccessCode(int responseCode) {
+				return super.isSuccessCode(responseCode) || responseCode == 304 && localHash != null;
 			}
 
 			@Override
@@ -43,25 +97,79 @@ public class HttpDownloader extends HttpTransfer {
 				HttpHeaders headers = response.headers();
 				HttpDownloader parent = HttpDownloader.this;
 
+				if (response.getStatus().code() == 304) {
+					// not modified: local file is up to date, complete without touching it
+					String hash = headers.contains("ETag") ? parent.cloud.getHash(headers) : localHash;
+					long size = parent.file.size();
+					long timestamp = HttpHeaders.getDateHeader(response, "Last-Modified", new Date(0)).getTime();
+					String version = parent.cloud.getVersion(headers);
+
+					FileInfo fileInfo = new FileInfo(remotePath, hash, size, timestamp, version, requestedVersion == null);
+					synchronized (parent) {
+						parent.fileInfo = fileInfo;
+					}
+					setSuccess(fileInfo);
+					return;
+				}
+
 				String hash = parent.cloud.getHash(headers);
 				long size = Long.parseLong(headers.get("Content-Length"));
 				long timestamp = HttpHeaders.getDateHeader(response, "Last-Modified").getTime(); // https://www.w3.org/Protocols/rfc2616/rfc2616-sec3.html#sec3.3.1
 				String version = parent.cloud.getVersion(headers);
 
+				FileInfo fileInfo = new FileInfo(remotePath, hash, size, timestamp, version, requestedVersion == null);
 				synchronized (parent) {
-					parent.fileInfo = new FileInfo(remotePath, hash, size, timestamp, version, requestedVersion == null);
+					parent.fileInfo = fileInfo;
+					parent.hashPartCount = parent.cloud.getHashPartCount(headers);
 				}
 
-				// resize local file
-				parent.file.truncate(size);
-
-				startTransfer(size, null);
+				// resizing the local file and copying cached parts may take long, therefore do it on the common fork join pool
+				// instead of the event loop
+				ForkJoinPool.commonPool().execute(() -> {
+					BitSet completedParts;
+					try {
+						completedParts = parent.prepareFile(fileInfo);
+					} catch (Throwable e) {
+						parent.setFailed(e);
+						return;
+					}
+					if (!parent.isDone())
+						startTransfer(size, null, completedParts);
+				});
 			}
 		});
 	}
 
 	// helpers
 
+	// get the parts that were completed by a previous download of the same file, resize the local file and copy the parts
+	// that are in the block cache to it
+	BitSet prepareFile(FileInfo fileInfo) throws IOException {
+		BitSet completedParts = new BitSet();
+		if (this.journal != null)
+			completedParts = this.journal.open(fileInfo, this.configuration.partSize);
+
+		// resize local file
+		this.file.truncate(fileInfo.size);
+
+		// copy parts that are in the block cache to the local file
+		BlockCache cache = this.configuration.cache;
+		if (cache != null && fileInfo.hash != null) {
+			long partSize = this.configuration.partSize;
+			int partCount = (int) ((fileInfo.size + partSize - 1) / partSize);
+			for (int partIndex = 0; partIndex < partCount; ++partIndex) {
+				long offset = partIndex * partSize;
+				int length = (int) Math.min(partSize, fileInfo.size - offset);
+				if (!completedParts.get(partIndex) && cache.get(this.urlPath, fileInfo.hash, offset, length, this.file)) {
+					if (this.journal != null)
+						this.journal.add(partIndex);
+					completedParts.set(partIndex);
+				}
+			}
+		}
+		return completedParts;
+	}
+
 	@Override
 	protected void connect(Part part) {
 		// build path and query, add version that we obtained in HEAD request so that we stick to one version during multipart download even if a new version
@@ -71,16 +179,154 @@ public class HttpDownloader extends HttpTransfer {
 		// http://docs.aws.amazon.com/AmazonS3/latest/API/RESTObjectGET.html
 		connect(new DownloadHandler(urlPathAndVersion, part) {
 			@Override
-			protected void success(Part part) {
-				// set state of part to SUCCESS (downloaded part has no id)
-				part.success(null);
+			protected void success(Part part) throws Exception {
+				// split parts are not recorded in the journal and the cache as they are based on the original part layout
+				HttpDownloader parent = HttpDownloader.this;
+				BlockCache cache = parent.configuration.cache;
+				boolean journal = parent.journal != null && !part.isSplit();
+				boolean store = cache != null && parent.fileInfo.hash != null && !part.isSplit();
+				if (!journal && !store) {
+					// set state of part to SUCCESS (downloaded part has no id)
+					part.success(null);
+					return;
+				}
+
+				// flush and record the part and store it in the block cache on the common fork join pool instead of the event
+				// loop, the part is successful when this is done
+				ForkJoinPool.commonPool().execute(() -> {
+					try {
+						// record part in journal after its data has reached the disk
+						if (journal) {
+							parent.file.force(false);
+							parent.journal.add(part.index);
+						}
+					} catch (Throwable e) {
+						parent.setFailed(e);
+						return;
+					}
+					if (store) {
+						try {
+							cache.put(parent.urlPath, parent.fileInfo.hash, part.offset, part.length, parent.file);
+						} catch (IOException e) {
+							// the cache is optional, the download succeeds anyway
+						}
+					}
+					parent.partDone(part);
+				});
 			}
 		});
 	}
 
+	// set state of a part to SUCCESS after it was processed on the common fork join pool and complete the transfer if it
+	// was the last part. The part stays in progress meanwhile, the remaining range is empty so it does not get split
+	void partDone(Part part) {
+		part.success(null);
+		for (Part p : this.parts) {
+			if (p.getState() != Part.State.SUCCESS)
+				return;
+		}
+		completeTransfer();
+	}
+
+	/**
+	 * Verify the downloaded data if the part layout of the remote file is known to match the part layout of the download.
+	 * A mismatch fails the transfer instead of retrying it because it is unknown which part is corrupt, therefore the whole
+	 * file has to be downloaded again which is left to the caller
+	 */
 	@Override
 	protected void completeTransfer() {
-		// download completed successfully
-		setSuccess(this.fileInfo);
+		// the last parts may be done on the event loop and on the common fork join pool at the same time
+		synchronized (this) {
+			if (this.completing || isDone())
+				return;
+			this.completing = true;
+		}
+
+		long partSize = this.configuration.partSize;
+		int partCount = (int) ((this.fileInfo.size + partSize - 1) / partSize);
+		int hashPartCount = this.hashPartCount;
+		String urlPath;
+		if (this.fileInfo.hash == null || hashPartCount < 0) {
+			// hash is not calculated from the data of the file
+			verify(false, false);
+		} else if (hashPartCount == 0) {
+			// file was uploaded at once, the hash is the MD5 of the file
+			verify(partCount <= 1, false);
+		} else if (hashPartCount != partCount) {
+			verify(false, true);
+		} else if (hashPartCount == 1) {
+			// file was uploaded in one part, therefore the layout matches
+			verify(true, true);
+		} else if ((urlPath = this.cloud.addPartNumber(this.cloud.addVersion(this.urlPath, this.fileInfo.version), 1)) == null) {
+			verify(false, true);
+		} else {
+			// same part count: check that the first part of the remote file has the same size as the downloaded parts
+			setState(State.COMPLETING);
+			connect(new RequestHandler() {
+				@Override
+				protected FullHttpRequest getRequest() throws Exception {
+					return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.HEAD, urlPath);
+				}
+
+				@Override
+				protected boolean isSuccessCode(int responseCode) {
+					// the part layout is unknown if the part can not be requested
+					return true;
+				}
+
+				@Override
+				protected void success(HttpResponse response) throws Exception {
+					String length = response.headers().get("Content-Length");
+					verify(response.getStatus().code() / 100 == 2 && length != null && Long.parseLong(length) == partSize, true);
+				}
+			});
+		}
+	}
+
+	// verify the downloaded data using the hashes of the parts that were calculated while downloading and complete.
+	// Parts that were completed by a previous download or that were split have to be read from the file, therefore
+	// hashing is done on the common fork join pool instead of the event loop
+	void verify(boolean verify, boolean multipart) {
+		if (!verify) {
+			complete(this.fileInfo);
+			return;
+		}
+		ForkJoinPool.commonPool().execute(() -> {
+			FileInfo fileInfo = this.fileInfo;
+			long partSize = this.configuration.partSize;
+			int partCount = (int) ((fileInfo.size + partSize - 1) / partSize);
+			try {
+				byte[][] partMd5s = new byte[partCount][];
+				for (int partIndex = 0; partIndex < partCount; ++partIndex) {
+					Part part = this.parts.get(partIndex);
+					long offset = partIndex * partSize;
+					partMd5s[partIndex] = part.md5 != null && !part.isSplit() ? part.md5
+							: HttpCloud.md5(this.file, offset, Math.min(partSize, fileInfo.size - offset));
+				}
+				String hash = this.cloud.combineHash(partMd5s, multipart);
+				if (!hash.equals(fileInfo.hash)) {
+					// the downloaded data is corrupt, also discard the journal as it is unknown which part is corrupt
+					if (this.journal != null)
+						this.journal.delete();
+					setFailed(new IOException("Hash mismatch: expected " + fileInfo.hash + ", downloaded " + hash));
+					return;
+				}
+			} catch (Throwable e) {
+				setFailed(e);
+				return;
+			}
+			fileInfo = new FileInfo(fileInfo.path, fileInfo.hash, fileInfo.size, fileInfo.timestamp, fileInfo.version, fileInfo.latest, true);
+			synchronized (this) {
+				this.fileInfo = fileInfo;
+			}
+			complete(fileInfo);
+		});
+	}
+
+	// download completed successfully, journal is not needed any more
+	void complete(FileInfo fileInfo) {
+		if (this.journal != null)
+			this.journal.delete();
+		setSuccess(fileInfo);
 	}
 }
@@ -30,7 +30,7 @@ public class HttpException extends Exception {
 		this.code = code;
 	}
 
-	int getCode() {
+	public int getCode() {
 		return this.code;
 	}
 
@@ -137,6 +137,11 @@ public abstract class HttpFuture<V> implements Future<V> {
 			return true;
 		}
 
+		// discard collected content, e.g. before the next response on a persistent connection
+		protected void discardContent() {
+			this.position = 0;
+		}
+
 		protected String getContentAsString() {
 			return new String(this.content, 0, this.position, HttpCloud.UTF_8);
 		}
@@ -160,7 +165,8 @@ public abstract class HttpFuture<V> implements Future<V> {
 		return responseCode == 400
 				|| responseCode == 408
 				|| responseCode == 429
-				|| responseCode == 500;
+				|| responseCode == 500
+				|| responseCode == 503;
 	}
 
 	protected abstract class RequestHandler extends Handler {
@@ -188,15 +194,19 @@ public abstract class HttpFuture<V> implements Future<V> {
 		protected void channelRead0(ChannelHandlerContext ctx, HttpObject msg) throws Exception {
 			if (msg instanceof HttpResponse) {
 				this.response = (HttpResponse) msg;
+
+				// discard content of previous try
+				discardContent();
 			} else if (msg instanceof HttpContent) {
 				HttpContent content = (HttpContent) msg;
 				ByteBuf buf = content.content();
 
-				if (addContent(buf, 4194304) && content instanceof LastHttpContent) {
-					// get http response code
-					int responseCode = this.response.getStatus().code();
+				// get http response code
+				int responseCode = this.response.getStatus().code();
+				boolean success = isSuccessCode(responseCode);
 
-					if (responseCode / 100 == 2) {
+				if ((success ? receive(buf) : addContent(buf, 4194304)) && content instanceof LastHttpContent) {
+					if (success) {
 						// success
 						success(this.response);
 						this.success = true;
@@ -223,6 +233,25 @@ public abstract class HttpFuture<V> implements Future<V> {
 			return ++this.retryCount >= maxRetryCount;
 		}
 
+		/**
+		 * Gets called for each chunk of content of a successful response. By default the content is collected so that it
+		 * can be obtained using getContent() in success(). Override to process the content while it arrives
+		 * @param buf chunk of content
+		 * @return false if the request has failed
+		 */
+		protected boolean receive(ByteBuf buf) throws Exception {
+			return addContent(buf, 4194304);
+		}
+
+		/**
+		 * Decides if the http response code indicates success. Override to accept additional codes, e.g. 304 (not modified)
+		 * for conditional requests
+		 * @return true if success() should be called
+		 */
+		protected boolean isSuccessCode(int responseCode) {
+			return responseCode / 100 == 2;
+		}
+
 		/**
 		 * Gets called when the http start needs to be created
 		 * @return http start with content
@@ -1,8 +1,15 @@
 package it.geenee.cloud.http;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
@@ -14,7 +21,7 @@ import it.geenee.cloud.*;
 /**
  * Base class for HTTP based upload and download
  */
-public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Transfer  {
+public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Transfer, TransferManager.Schedulable  {
 
 	protected final FileChannel file;
 	protected final String urlPath;
@@ -27,18 +34,31 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 
 	protected List<Part> parts;
 
+	// minimum length of a range that is split off a part in progress to keep idle channels busy, 0 to disable splitting
+	protected int minSplitLength = 0;
+	private final Object splitLock = new Object();
+
 	protected class Part implements Transfer.Part {
 		public final int index;
 		public final long offset;
-		public final int length;
+
+		// length of part, may get reduced if the part is split
+		public volatile int length;
 
 		// state of part
 		private State state = State.QUEUED;
 		private int retryCount = 0;
 
+		// number of bytes received so far and true if the part was split or was split off another part
+		private int received = 0;
+		private boolean split = false;
+
 		// id of part, only used for some transfer types, e.g. multipart upload
 		public String id = null;
 
+		// md5 hash of part calculated while downloading, null if not downloaded by this transfer
+		public byte[] md5 = null;
+
 		public Part(int index, long offset, int length) {
 			this.index = index;
 			this.offset = offset;
@@ -75,6 +95,13 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 			return this.id;
 		}
 
+		/**
+		 * Returns true if the range of the part differs from the range given by the part size because it was split
+		 */
+		public synchronized boolean isSplit() {
+			return this.split;
+		}
+
 		// helpers
 
 		public synchronized boolean start() {
@@ -97,6 +124,28 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 			stateChange();
 		}
 
+		// set number of received bytes and return current length
+		public synchronized int receive(int received) {
+			this.received = received;
+			return this.length;
+		}
+
+		// get number of bytes that are not received yet if the part is in progress
+		public synchronized int getRemaining() {
+			return this.state == State.PROGRESS ? this.length - this.received : 0;
+		}
+
+		// shrink the part and return the length of the cut off tail or 0 if the remaining range is too small
+		public synchronized int split(int minLength) {
+			int remaining = this.length - this.received;
+			if (this.state != State.PROGRESS || remaining < 2 * minLength)
+				return 0;
+			int tailLength = remaining / 2;
+			this.length -= tailLength;
+			this.split = true;
+			return tailLength;
+		}
+
 		public synchronized boolean retry(int maxRetryCount) {
 			if (++this.retryCount >= maxRetryCount) {
 				this.state = State.FAILED;
@@ -119,6 +168,9 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 		boolean uploading = false;
 		long position;
 
+		// true while paused by the bandwidth limiter
+		boolean throttled = false;
+
 		public UploadHandler(String urlPath, Part part) {
 			this.urlPath = urlPath;
 			this.part = part;
@@ -137,6 +189,7 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 		@Override
 		public void channelActive(ChannelHandlerContext ctx) throws Exception {
 			// connection is established: send http request to server
+			this.throttled = false;
 
 			// build http request (without content as we send it on receiving continue 100 status code)
 			HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.PUT, this.urlPath);
@@ -211,7 +264,7 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 
 		void upload(ChannelHandlerContext ctx) throws IOException {
 			Channel channel = ctx.channel();
-			while (channel.isWritable()) {
+			while (channel.isWritable() && !this.throttled) {
 				if (this.position >= this.part.length) {
 					// send last chunk for this input
 					ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
@@ -234,6 +287,24 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 							buffer.release();
 						}
 					}
+
+					// pause until the bandwidth limiter has tokens for the next chunk
+					BandwidthLimiter limiter = configuration.bandwidthLimiter;
+					long delay = limiter == null ? 0 : limiter.take(bufferSize);
+					if (delay > 0) {
+						this.throttled = true;
+						ctx.executor().schedule(() -> {
+							if (!channel.isActive())
+								return;
+							this.throttled = false;
+							try {
+								if (this.uploading)
+									upload(ctx);
+							} catch (IOException e) {
+								exceptionCaught(ctx, e);
+							}
+						}, delay, TimeUnit.NANOSECONDS);
+					}
 				}
 			}
 		}
@@ -251,9 +322,22 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 		int responseCode;
 		int position;
 
+		// md5 of part, updated with each chunk that is written to the file
+		final MessageDigest md;
+
+		// time (System.nanoTime()) when reading gets resumed after throttling and true while a resume is scheduled
+		long resumeTime;
+		boolean resumeScheduled = false;
+
 		DownloadHandler(String urlPath, Part part) {
 			this.urlPath = urlPath;
 			this.part = part;
+			try {
+				this.md = MessageDigest.getInstance("MD5");
+			} catch (NoSuchAlgorithmException e) {
+				// MD5 is supported by every java platform
+				throw new IllegalStateException(e);
+			}
 		}
 
 		@Override
@@ -297,17 +381,44 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 					// success: set state of part to PROGRESS
 					this.part.setState(Transfer.Part.State.PROGRESS);
 					this.position = 0;
+					this.part.receive(0);
+					this.md.reset();
 				}
 			} else if (msg instanceof HttpContent) {
 				HttpContent content = (HttpContent) msg;
 				ByteBuf buf = content.content();
 
 				if (this.responseCode / 100 == 2) {
-					// write content to file
-					this.position += file.write(buf.nioBuffer(), this.part.offset + this.position);
+					// ignore remaining content if part was completed early because it was split
+					if (this.success)
+						return;
+
+					// stop reading until the bandwidth limiter has tokens for the next chunk
+					BandwidthLimiter limiter = configuration.bandwidthLimiter;
+					long delay = limiter == null ? 0 : limiter.take(buf.readableBytes());
+					if (delay > 0) {
+						long resumeTime = System.nanoTime() + delay;
+						if (!this.resumeScheduled || resumeTime - this.resumeTime > 0)
+							this.resumeTime = resumeTime;
+						ctx.channel().config().setAutoRead(false);
+						if (!this.resumeScheduled) {
+							this.resumeScheduled = true;
+							resume(ctx, delay);
+						}
+					}
 
-					if (content instanceof LastHttpContent) {
+					// write content to file and update hash of part (the part may have been shortened by a split)
+					ByteBuffer data = buf.nioBuffer();
+					int length = this.part.receive(this.position);
+					if (data.remaining() > length - this.position)
+						data.limit(data.position() + length - this.position);
+					this.md.update(data.duplicate());
+					this.position += file.write(data, this.part.offset + this.position);
+					this.part.receive(this.position);
+
+					if (content instanceof LastHttpContent || this.position >= length) {
 						// success
+						this.part.md5 = this.md.digest();
 						success(this.part);
 						this.success = true;
 
@@ -329,7 +440,22 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 			}
 		}
 
-		protected abstract void success(Part part);
+		protected abstract void success(Part part) throws Exception;
+
+		// re-enable reading when the latest resume time has passed, all chunks that were read in the meantime postpone it
+		void resume(ChannelHandlerContext ctx, long delay) {
+			ctx.executor().schedule(() -> {
+				if (!ctx.channel().isActive())
+					return;
+				long remaining = this.resumeTime - System.nanoTime();
+				if (remaining > 0) {
+					resume(ctx, remaining);
+				} else {
+					this.resumeScheduled = false;
+					ctx.channel().config().setAutoRead(true);
+				}
+			}, delay, TimeUnit.NANOSECONDS);
+		}
 
 		@Override
 		public boolean retry(int maxRetryCount) {
@@ -385,6 +511,31 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
  	// helpers
 
 	protected void startTransfer(long fileLength, String id) {
+		startTransfer(fileLength, id, new BitSet());
+	}
+
+	/**
+	 * Create parts and start transfer
+	 * @param fileLength length of file
+	 * @param id id of transfer, e.g. upload id of multipart upload
+	 * @param completedParts indices of parts that are already transferred, e.g. when resuming a download
+	 */
+	protected void startTransfer(long fileLength, String id, BitSet completedParts) {
+		Map<Integer, String> parts = new HashMap<>();
+		for (int partIndex = completedParts.nextSetBit(0); partIndex >= 0; partIndex = completedParts.nextSetBit(partIndex + 1)) {
+			parts.put(partIndex, null);
+		}
+		startTransfer(fileLength, id, parts);
+	}
+
+	/**
+	 * Create parts and start transfer
+	 * @param fileLength length of file
+	 * @param id id of transfer, e.g. upload id of multipart upload
+	 * @param completedParts parts that are already transferred, part index -> part id (e.g. ETag when resuming a
+	 * multipart upload)
+	 */
+	protected void startTransfer(long fileLength, String id, Map<Integer, String> completedParts) {
 		// create parts
 		long partSize = this.configuration.partSize;
 		int partCount = (int) ((fileLength + partSize - 1) / partSize);
@@ -396,27 +547,176 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 				// last part might be smaller
 				end = fileLength;
 			}
-			parts.add(new Part(partIndex, begin, (int) (end - begin)));
+			Part part = new Part(partIndex, begin, (int) (end - begin));
+			if (completedParts.containsKey(partIndex)) {
+				part.state = Part.State.SUCCESS;
+				part.id = completedParts.get(partIndex);
+			}
+			parts.add(part);
 		}
 		this.id = id;
 
 		synchronized (this) {
-			this.parts = parts;
+			// parts can be added while iterating if they are split
+			this.parts = new CopyOnWriteArrayList<>(parts);
 		}
 
 		setState(State.PROGRESS);
 
+		TransferManager manager = this.configuration.transferManager;
+		if (manager != null) {
+			// the transfer manager starts the parts
+			boolean completed = true;
+			for (Part part : parts) {
+				if (part.getState() != Part.State.SUCCESS)
+					completed = false;
+			}
+			if (completed) {
+				completeTransfer();
+				return;
+			}
+
+			// remove from the transfer manager when done. Gets called on the event loop because listeners are called
+			// while the lock of this transfer is held
+			addListener(f -> this.globals.eventLoopGroup.execute(() -> manager.remove(this)));
+			Integer priority = this.configuration.priority;
+			manager.add(this, priority != null ? priority : 0, this.configuration.channelCount);
+			return;
+		}
+
 		// start first parts
-		int startCount = Math.min(partCount, this.configuration.channelCount);
-		for (int i = 0; i < startCount; ++i) {
-			Part part = parts.get(i);
-			part.start();
-			connect(part);
+		int startCount = 0;
+		for (Part part : parts) {
+			if (startCount >= this.configuration.channelCount)
+				break;
+			if (part.start()) {
+				connect(part);
+				++startCount;
+			}
 		}
 		stateChange();
+
+		// complete immediately if all parts were already transferred
+		if (startCount == 0 && partCount > 0)
+			completeTransfer();
+	}
+
+	/**
+	 * Start the next queued part or split a part in progress. Gets called by the transfer manager
+	 * @return true if a part was started
+	 */
+	@Override
+	public boolean startNextPart() {
+		if (isDone())
+			return false;
+		for (Part part : this.parts) {
+			if (part.start()) {
+				stateChange();
+				connect(part);
+				return true;
+			}
+		}
+		Part tail = splitPart();
+		if (tail != null) {
+			tail.start();
+			connect(tail);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Start an upload only if the remote file differs from the local file. The hash of the local file is calculated on
+	 * the common fork join pool and compared with the given hash of the remote file or with a conditional HEAD request.
+	 * If the files are identical, the transfer completes with the info of the remote file without sending any data
+	 * @param remotePath remote path of the file
+	 * @param hash calculates the hash of the local file in the same way as the cloud storage, e.g. Storage.hash()
+	 * @param remoteHash known hash of the remote file (e.g. from Storage.listHashes()), null if the remote file does not exist
+	 * @param head true to get the hash of the remote file with a HEAD request instead of using remoteHash
+	 * @param start starts the upload if the files differ
+	 */
+	protected void startUploadIfChanged(String remotePath, Callable<String> hash, String remoteHash, boolean head, Runnable start) {
+		// nothing to compare with
+		if (!head && remoteHash == null) {
+			start.run();
+			return;
+		}
+
+		ForkJoinPool.commonPool().execute(() -> {
+			String localHash;
+			long size;
+			try {
+				localHash = hash.call();
+				size = this.file.size();
+			} catch (Throwable e) {
+				setFailed(e);
+				return;
+			}
+			if (isDone())
+				return;
+
+			if (!head) {
+				if (localHash.equals(remoteHash))
+					skipUpload(new FileInfo(remotePath, remoteHash, size, 0, null, true));
+				else
+					start.run();
+				return;
+			}
+
+			// conditional request: server responds with 304 (not modified) if the hash of the remote file is the local hash
+			// http://docs.aws.amazon.com/AmazonS3/latest/API/RESTObjectHEAD.html
+			connect(new RequestHandler() {
+				@Override
+				protected FullHttpRequest getRequest() throws Exception {
+					FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.HEAD, urlPath);
+					request.headers().set(HttpHeaders.Names.IF_NONE_MATCH, '"' + localHash + '"');
+					return request;
+				}
+
+				@Override
+				protected boolean isSuccessCode(int responseCode) {
+					// not found: upload the file
+					return super.isSuccessCode(responseCode) || responseCode == 304 || responseCode == 404;
+				}
+
+				@Override
+				protected void success(HttpResponse response) throws Exception {
+					if (response.getStatus().code() != 304) {
+						start.run();
+						return;
+					}
+
+					// not modified: remote file is identical
+					HttpHeaders headers = response.headers();
+					String hash = headers.contains("ETag") ? cloud.getHash(headers) : localHash;
+					long timestamp = HttpHeaders.getDateHeader(response, "Last-Modified", new Date(0)).getTime();
+					skipUpload(new FileInfo(remotePath, hash, size, timestamp, cloud.getVersion(headers), true));
+				}
+			});
+		});
+	}
+
+	// complete without uploading because the remote file is identical
+	void skipUpload(FileInfo fileInfo) {
+		synchronized (this) {
+			this.fileInfo = fileInfo;
+		}
+		setSuccess(fileInfo);
 	}
 
 	protected void startPart() {
+		TransferManager manager = this.configuration.transferManager;
+		if (manager != null) {
+			// release the slot of the part, the transfer manager decides which part is started next
+			manager.release(this);
+			for (Part part : this.parts) {
+				if (part.getState() != Part.State.SUCCESS)
+					return;
+			}
+			completeTransfer();
+			return;
+		}
+
 		// try to start a part
 		for (Part part : this.parts) {
 			if (part.start()) {
@@ -426,7 +726,15 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 			}
 		}
 
-		// all parts are already started: check if parts still in progress
+		// all parts are already started: split a part in progress to use the idle channel
+		Part tail = splitPart();
+		if (tail != null) {
+			tail.start();
+			connect(tail);
+			return;
+		}
+
+		// check if parts still in progress
 		for (Part part : this.parts) {
 			if (part.getState() != Part.State.SUCCESS)
 				return;
@@ -436,6 +744,39 @@ public abstract class HttpTransfer extends HttpFuture<FileInfo> implements Trans
 		completeTransfer();
 	}
 
+	/**
+	 * Split the part with the largest remaining range and create a new part for the tail of the range
+	 * @return new part or null if no part has enough remaining range or splitting is disabled
+	 */
+	protected Part splitPart() {
+		if (this.minSplitLength <= 0)
+			return null;
+
+		synchronized (this.splitLock) {
+			// find part with largest remaining range
+			Part largest = null;
+			int largestRemaining = 0;
+			for (Part part : this.parts) {
+				int remaining = part.getRemaining();
+				if (remaining > largestRemaining) {
+					largest = part;
+					largestRemaining = remaining;
+				}
+			}
+			if (largest == null)
+				return null;
+
+			// shrink part and create new part for the tail
+			int tailLength = largest.split(this.minSplitLength);
+			if (tailLength == 0)
+				return null;
+			Part tail = new Part(this.parts.size(), largest.offset + largest.length, tailLength);
+			tail.split = true;
+			this.parts.add(tail);
+			return tail;
+		}
+	}
+
 	protected abstract void connect(Part part);
 
 	protected abstract void completeTransfer();
@@ -0,0 +1,187 @@
+package it.geenee.cloud.http;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+
+/**
+ * Append-only journal of uploads that can be resumed after a crash. Each line is a tab separated record:
+ * "Q id remotePath localPath size lastModified partSize" for a queued file, "I id uploadId" for an initiated multipart
+ * upload, "P id partIndex eTag" for an uploaded part and "D id" for a finished upload. Records are written with sync so
+ * that they have reached the disk before the next step of the upload starts
+ */
+public class UploadJournal {
+	final File path;
+
+	// id of next queued file
+	int nextId = 0;
+
+	/**
+	 * Unfinished upload of a local file
+	 */
+	public static class Entry {
+		public final int id;
+		public final String remotePath;
+		public final File file;
+
+		// size and last modified time of the local file when it was queued
+		public final long size;
+		public final long lastModified;
+
+		// part size of multipart upload
+		public final int partSize;
+
+		// upload id of multipart upload, null if not initiated yet
+		public String uploadId = null;
+
+		// uploaded parts of multipart upload, part index -> ETag
+		public final Map<Integer, String> parts = new TreeMap<>();
+
+		Entry(int id, String remotePath, File file, long size, long lastModified, int partSize) {
+			this.id = id;
+			this.remotePath = remotePath;
+			this.file = file;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.partSize = partSize;
+		}
+
+		/**
+		 * Check if the local file is unchanged since it was queued
+		 */
+		public boolean isUnchanged() {
+			return this.file.isFile() && this.file.length() == this.size && this.file.lastModified() == this.lastModified;
+		}
+	}
+
+
+	public UploadJournal(File path) {
+		this.path = path;
+	}
+
+	/**
+	 * Open the journal and return the unfinished uploads. The journal is rewritten so that it only contains the
+	 * unfinished uploads
+	 * @return unfinished uploads in the order in which they were queued
+	 * @throws IOException
+	 */
+	public synchronized List<Entry> open() throws IOException {
+		Map<Integer, Entry> entries = new LinkedHashMap<>();
+
+		// read existing journal
+		if (this.path.exists()) {
+			String[] lines = new String(Files.readAllBytes(this.path.toPath()), HttpCloud.UTF_8).split("\n", -1);
+
+			// last element is either empty or a partially written line, therefore ignore it
+			for (int i = 0; i < lines.length - 1; ++i) {
+				String[] fields = lines[i].split("\t", -1);
+				int id = Integer.parseInt(fields[1]);
+				this.nextId = Math.max(this.nextId, id + 1);
+				Entry entry = entries.get(id);
+				switch (fields[0]) {
+					case "Q":
+						entries.put(id, new Entry(id, fields[2], new File(fields[3]), Long.parseLong(fields[4]),
+								Long.parseLong(fields[5]), Integer.parseInt(fields[6])));
+						break;
+					case "I":
+						if (entry != null)
+							entry.uploadId = fields[2];
+						break;
+					case "P":
+						if (entry != null)
+							entry.parts.put(Integer.parseInt(fields[2]), fields[3]);
+						break;
+					case "D":
+						entries.remove(id);
+						break;
+				}
+			}
+		}
+
+		// rewrite journal without finished uploads and a partially written line
+		StringBuilder b = new StringBuilder();
+		for (Entry entry : entries.values()) {
+			appendQueued(b, entry);
+			if (entry.uploadId != null)
+				b.append("I\t").append(entry.id).append('\t').append(entry.uploadId).append('\n');
+			for (Map.Entry<Integer, String> part : entry.parts.entrySet()) {
+				b.append("P\t").append(entry.id).append('\t').append(part.getKey()).append('\t').append(part.getValue()).append('\n');
+			}
+		}
+		Files.write(this.path.toPath(), b.toString().getBytes(HttpCloud.UTF_8), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+		return new ArrayList<>(entries.values());
+	}
+
+	/**
+	 * Queue files for upload. All files are recorded with one write
+	 * @param files files to upload, remote path -> local file
+	 * @param partSize part size of multipart uploads
+	 * @return new entries
+	 * @throws IOException
+	 */
+	public synchronized List<Entry> add(Map<String, File> files, int partSize) throws IOException {
+		List<Entry> entries = new ArrayList<>();
+		StringBuilder b = new StringBuilder();
+		for (Map.Entry<String, File> file : files.entrySet()) {
+			String remotePath = file.getKey();
+			File localFile = file.getValue().getAbsoluteFile();
+			if (!isValid(remotePath) || !isValid(localFile.getPath()))
+				throw new IllegalArgumentException("Path contains tab or line break: " + remotePath);
+			Entry entry = new Entry(this.nextId++, remotePath, localFile, localFile.length(), localFile.lastModified(), partSize);
+			appendQueued(b, entry);
+			entries.add(entry);
+		}
+		write(b.toString());
+		return entries;
+	}
+
+	/**
+	 * Record the upload id of an initiated multipart upload
+	 * @throws IOException
+	 */
+	public synchronized void initiated(Entry entry, String uploadId) throws IOException {
+		write("I\t" + entry.id + '\t' + uploadId + '\n');
+	}
+
+	/**
+	 * Record an uploaded part of a multipart upload
+	 * @throws IOException
+	 */
+	public synchronized void partDone(Entry entry, int partIndex, String eTag) throws IOException {
+		write("P\t" + entry.id + '\t' + partIndex + '\t' + eTag + '\n');
+	}
+
+	/**
+	 * Record a finished upload, e.g. when the upload succeeded or the local file does not exist any more
+	 * @throws IOException
+	 */
+	public synchronized void done(Entry entry) throws IOException {
+		write("D\t" + entry.id + '\n');
+	}
+
+	/**
+	 * Delete the journal after all uploads completed
+	 */
+	public synchronized void delete() {
+		this.path.delete();
+	}
+
+	// helpers
+
+	void write(String records) throws IOException {
+		Files.write(this.path.toPath(), records.getBytes(HttpCloud.UTF_8), StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+	}
+
+	static void appendQueued(StringBuilder b, Entry entry) {
+		b.append("Q\t").append(entry.id).append('\t').append(entry.remotePath).append('\t').append(entry.file.getPath())
+				.append('\t').append(entry.size).append('\t').append(entry.lastModified).append('\t').append(entry.partSize).append('\n');
+	}
+
+	static boolean isValid(String path) {
+		return path.indexOf('\t') == -1 && path.indexOf('\n') == -1;
+	}
+}
@@ -0,0 +1,295 @@
+package it.geenee.cloud.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufProcessor;
+
+
+/**
+ * Incremental XML decoder for the simple documents returned by cloud APIs. The content of a http response is pushed
+ * chunk by chunk using decode() as it arrives and start and end of elements are reported to the subclass, therefore the
+ * response does not need to be buffered. Supports elements, text, entities, comments, CDATA sections and processing
+ * instructions. Attributes and namespace prefixes are ignored
+ */
+public abstract class XmlDecoder implements ByteBufProcessor {
+	// maximum size of a tag or text of an element
+	public static final int MAX_LENGTH = 1048576;
+
+	enum State {
+		// text between tags
+		TEXT,
+
+		// inside of markup, i.e. between '<' and '>'
+		MARKUP,
+
+		// inside of quoted attribute value
+		QUOTE
+	}
+
+	State state = State.TEXT;
+	char quote;
+
+	// markup without '<' and '>', e.g. "Key" or "/Key"
+	byte[] markup = new byte[64];
+	int markupLength = 0;
+
+	// raw text of current element
+	byte[] text = new byte[256];
+	int textLength = 0;
+
+	// depth of current element, 1 for root element
+	int depth = 0;
+
+	/**
+	 * Decode a chunk of the document
+	 * @param buf chunk of document, all readable bytes are consumed
+	 * @throws Exception
+	 */
+	public void decode(ByteBuf buf) throws Exception {
+		int readerIndex = buf.readerIndex();
+		int writerIndex = buf.writerIndex();
+		if (readerIndex < writerIndex)
+			buf.forEachByte(readerIndex, writerIndex - readerIndex, this);
+		buf.readerIndex(writerIndex);
+	}
+
+	/**
+	 * Decode a chunk of the document
+	 * @param data chunk of the document
+	 * @param offset offset of chunk in data
+	 * @param length length of chunk
+	 * @throws Exception
+	 */
+	public void decode(byte[] data, int offset, int length) throws Exception {
+		int end = offset + length;
+		for (int i = offset; i < end; ++i) {
+			process(data[i]);
+		}
+	}
+
+	/**
+	 * Decode a whole document
+	 * @param in input stream containing the document
+	 * @throws Exception
+	 */
+	public void decode(InputStream in) throws Exception {
+		byte[] buffer = new byte[8192];
+		int length;
+		while ((length = in.read(buffer)) > 0) {
+			decode(buffer, 0, length);
+		}
+	}
+
+	/**
+	 * Get depth of current element
+	 * @return depth, 1 for root element
+	 */
+	public int getDepth() {
+		return this.depth;
+	}
+
+	/**
+	 * Gets called for each start tag
+	 * @param name local name of element (without namespace prefix)
+	 * @param depth depth of element, 1 for root element
+	 */
+	protected abstract void startElement(String name, int depth) throws Exception;
+
+	/**
+	 * Gets called for each end tag
+	 * @param name local name of element (without namespace prefix)
+	 * @param depth depth of element, 1 for root element
+	 * @param text text of element with entities resolved. Only meaningful for elements that contain no other elements
+	 */
+	protected abstract void endElement(String name, int depth, String text) throws Exception;
+
+	// helpers
+
+	@Override
+	public boolean process(byte b) throws Exception {
+		switch (this.state) {
+			case TEXT:
+				if (b == '<') {
+					this.state = State.MARKUP;
+					this.markupLength = 0;
+				} else {
+					this.text = append(this.text, this.textLength, b);
+					++this.textLength;
+				}
+				break;
+			case MARKUP:
+				if (b == '>' && isMarkupComplete()) {
+					this.state = State.TEXT;
+					markup();
+				} else {
+					if ((b == '"' || b == '\'') && this.markupLength > 0 && isTag()) {
+						// attribute value may contain '>'
+						this.state = State.QUOTE;
+						this.quote = (char) b;
+					}
+					this.markup = append(this.markup, this.markupLength, b);
+					++this.markupLength;
+				}
+				break;
+			case QUOTE:
+				if (b == this.quote)
+					this.state = State.MARKUP;
+				this.markup = append(this.markup, this.markupLength, b);
+				++this.markupLength;
+				break;
+		}
+		return true;
+	}
+
+	static byte[] append(byte[] buffer, int length, byte b) throws IOException {
+		if (length == buffer.length) {
+			if (length >= MAX_LENGTH)
+				throw new IOException("XML tag or text too long");
+			buffer = Arrays.copyOf(buffer, length * 2);
+		}
+		buffer[length] = b;
+		return buffer;
+	}
+
+	boolean startsWith(String s) {
+		int length = s.length();
+		if (this.markupLength < length)
+			return false;
+		for (int i = 0; i < length; ++i) {
+			if (this.markup[i] != s.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	boolean endsWith(String s) {
+		int length = s.length();
+		if (this.markupLength < length)
+			return false;
+		int offset = this.markupLength - length;
+		for (int i = 0; i < length; ++i) {
+			if (this.markup[offset + i] != s.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	// check if markup is a start or end tag (and not a comment, CDATA section or processing instruction)
+	boolean isTag() {
+		byte first = this.markup[0];
+		return first != '!' && first != '?';
+	}
+
+	// check if '>' ends the markup, i.e. it is not part of a comment or CDATA section
+	boolean isMarkupComplete() {
+		if (startsWith("!--"))
+			return this.markupLength >= 5 && endsWith("--");
+		if (startsWith("![CDATA["))
+			return this.markupLength >= 10 && endsWith("]]");
+		return true;
+	}
+
+	void markup() throws Exception {
+		if (this.markupLength == 0)
+			throw new IOException("Empty XML tag");
+		byte first = this.markup[0];
+		if (first == '?' || first == '!') {
+			if (startsWith("![CDATA[")) {
+				// CDATA section: add to text with escaped '&' as the text gets unescaped at the end of the element
+				for (int i = 8; i < this.markupLength - 2; ++i) {
+					byte b = this.markup[i];
+					if (b == '&') {
+						for (int j = 0; j < 5; ++j) {
+							this.text = append(this.text, this.textLength++, (byte) "&amp;".charAt(j));
+						}
+					} else {
+						this.text = append(this.text, this.textLength++, b);
+					}
+				}
+			}
+
+			// ignore processing instructions, comments and document type declarations
+		} else if (first == '/') {
+			// end tag
+			if (this.depth == 0)
+				throw new IOException("Unbalanced XML end tag");
+			String name = getName(1);
+			String text = unescape(new String(this.text, 0, this.textLength, HttpCloud.UTF_8));
+			this.textLength = 0;
+			endElement(name, this.depth--, text);
+		} else {
+			// start tag, may be self-closing
+			String name = getName(0);
+			this.textLength = 0;
+			startElement(name, ++this.depth);
+			if (this.markup[this.markupLength - 1] == '/')
+				endElement(name, this.depth--, "");
+		}
+	}
+
+	// get local name of element from markup
+	String getName(int begin) {
+		int end = begin;
+		while (end < this.markupLength) {
+			byte b = this.markup[end];
+			if (b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '/')
+				break;
+			if (b == ':')
+				begin = end + 1;
+			++end;
+		}
+		return new String(this.markup, begin, end - begin, HttpCloud.UTF_8);
+	}
+
+	/**
+	 * Resolve entities, e.g. "&amp;lt;" becomes "&lt;"
+	 * @param s string with entities
+	 * @return string with resolved entities
+	 */
+	public static String unescape(String s) {
+		int pos = s.indexOf('&');
+		if (pos == -1)
+			return s;
+
+		StringBuilder b = new StringBuilder(s.length());
+		int begin = 0;
+		while (pos != -1) {
+			int end = s.indexOf(';', pos);
+			if (end == -1)
+				break;
+			b.append(s, begin, pos);
+			String entity = s.substring(pos + 1, end);
+			switch (entity) {
+				case "amp":
+					b.append('&');
+					break;
+				case "lt":
+					b.append('<');
+					break;
+				case "gt":
+					b.append('>');
+					break;
+				case "quot":
+					b.append('"');
+					break;
+				case "apos":
+					b.append('\'');
+					break;
+				default:
+					if (entity.startsWith("#x"))
+						b.appendCodePoint(Integer.parseInt(entity.substring(2), 16));
+					else if (entity.startsWith("#"))
+						b.appendCodePoint(Integer.parseInt(entity.substring(1)));
+					else
+						b.append('&').append(entity).append(';');
+			}
+			begin = end + 1;
+			pos = s.indexOf('&', begin);
+		}
+		b.append(s, begin, s.length());
+		return b.toString();
+	}
+}
@@ -0,0 +1,34 @@
+package it.geenee.cloud;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+
+public class BandwidthLimiterTest {
+
+	@Test
+	public void testTake() throws Exception {
+		// 1 MB/s with burst of 100 KB
+		BandwidthLimiter limiter = new BandwidthLimiter(1000000, 100000);
+
+		// burst is available immediately
+		Assert.assertEquals(0, limiter.take(100000));
+
+		// next 100 KB take about 100 ms
+		long delay = limiter.take(100000);
+		Assert.assertTrue(delay > 90000000L && delay <= 100000000L);
+
+		// debt accumulates
+		Assert.assertTrue(limiter.take(100000) > delay);
+
+		// higher bandwidth pays back the debt faster
+		limiter.setBandwidth(1000000000);
+		Thread.sleep(10);
+		Assert.assertEquals(0, limiter.take(1000));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroBandwidth() throws Exception {
+		new BandwidthLimiter(1000000, 100000).setBandwidth(0);
+	}
+}
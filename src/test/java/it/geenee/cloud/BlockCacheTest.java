@@ -0,0 +1,62 @@
+package it.geenee.cloud;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+
+public class BlockCacheTest {
+
+	@Test
+	public void testGetPutEvict() throws Exception {
+		File directory = Files.createTempDirectory("cache").toFile();
+		File sourcePath = File.createTempFile("source", ".bin");
+		File targetPath = File.createTempFile("target", ".bin");
+		try (RandomAccessFile source = new RandomAccessFile(sourcePath, "rw"); RandomAccessFile target = new RandomAccessFile(targetPath, "rw")) {
+			FileChannel sourceChannel = source.getChannel();
+			FileChannel targetChannel = target.getChannel();
+			byte[] data = new byte[3000];
+			for (int i = 0; i < data.length; ++i)
+				data[i] = (byte) i;
+			sourceChannel.write(ByteBuffer.wrap(data), 0);
+
+			// cache has room for two blocks of 1000 bytes
+			BlockCache cache = new BlockCache(directory, 2000);
+			Assert.assertFalse(cache.get("/bucket/foo", "abc", 0, 1000, targetChannel));
+			cache.put("/bucket/foo", "abc", 0, 1000, sourceChannel);
+			cache.put("/bucket/foo", "abc", 1000, 1000, sourceChannel);
+
+			// hit copies block to same offset
+			Assert.assertTrue(cache.get("/bucket/foo", "abc", 1000, 1000, targetChannel));
+			ByteBuffer buffer = ByteBuffer.allocate(1000);
+			targetChannel.read(buffer, 1000);
+			for (int i = 0; i < 1000; ++i)
+				Assert.assertEquals(data[1000 + i], buffer.get(i));
+
+			// other hash is a different file
+			Assert.assertFalse(cache.get("/bucket/foo", "def", 1000, 1000, targetChannel));
+
+			// third block evicts least recently used first block
+			cache.put("/bucket/foo", "abc", 2000, 1000, sourceChannel);
+			Assert.assertEquals(2000, cache.getSize());
+			Assert.assertEquals(1, cache.getEvictionCount());
+			Assert.assertFalse(cache.get("/bucket/foo", "abc", 0, 1000, targetChannel));
+			Assert.assertTrue(cache.get("/bucket/foo", "abc", 2000, 1000, targetChannel));
+			Assert.assertEquals(2, cache.getHitCount());
+			Assert.assertEquals(3, cache.getMissCount());
+
+			// blocks survive a restart
+			Assert.assertEquals(2, new BlockCache(directory, 2000).getBlockCount());
+			cache.clear();
+		} finally {
+			sourcePath.delete();
+			targetPath.delete();
+			directory.delete();
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package it.geenee.cloud;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+
+public class FileHashMapTest {
+
+	@Test
+	public void testPutGetRemove() throws Exception {
+		FileHashMap map = new FileHashMap();
+		Map<String, String> reference = new HashMap<>();
+		for (int i = 0; i < 10000; ++i) {
+			String path = "/foo/" + i + "\u00e4";
+			String hash = i % 100 == 0 ? "other" + i : String.format("%032x", i) + (i % 2 == 0 ? "" : "-" + i);
+			map.put(path, hash);
+			reference.put(path, hash);
+		}
+		map.trim();
+		Assert.assertEquals(reference, map);
+		Assert.assertEquals(String.format("%032x", 3) + "-3", map.get("/foo/3\u00e4"));
+		Assert.assertNull(map.get("/foo/3"));
+
+		// replace and remove
+		Assert.assertEquals("other0", map.put("/foo/0\u00e4", "other"));
+		Assert.assertEquals("other", map.remove("/foo/0\u00e4"));
+		Assert.assertFalse(map.containsKey("/foo/0\u00e4"));
+		Assert.assertEquals(9999, map.size());
+
+		// remove while iterating as in synchronization of a directory
+		Iterator<Map.Entry<String, String>> it = map.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, String> entry = it.next();
+			Assert.assertEquals(reference.get(entry.getKey()), entry.getValue());
+			it.remove();
+		}
+		Assert.assertTrue(map.isEmpty());
+
+		// add again after removing all entries
+		map.put("/foo/0\u00e4", "bar");
+		Assert.assertEquals("bar", new FileHashMap(map).get("/foo/0\u00e4"));
+	}
+}
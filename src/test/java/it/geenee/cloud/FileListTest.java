@@ -0,0 +1,44 @@
+package it.geenee.cloud;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+
+public class FileListTest {
+
+	@Test
+	public void testAddGet() throws Exception {
+		FileList fileList = new FileList();
+		for (int i = 0; i < 1000; ++i) {
+			fileList.add("/foo/" + i + "\u00e4", "fba9dede5f27731c9771645a39863328-" + (i + 1), i, 1000L * i, null, true);
+		}
+		fileList.add("/bar", "ABC", 5, 6, "v1", false);
+		fileList.add("/baz", null, 0, 7, "v2", true);
+		fileList.add("/qux", "fba9dede5f27731c9771645a39863328-01", 0, 8, null, true);
+		fileList.trim();
+
+		Assert.assertEquals(1003, fileList.size());
+		FileInfo fileInfo = fileList.get(999);
+		Assert.assertEquals("/foo/999\u00e4", fileInfo.path);
+		Assert.assertEquals("fba9dede5f27731c9771645a39863328-1000", fileInfo.hash);
+		Assert.assertEquals(999, fileInfo.size);
+		Assert.assertEquals(999000, fileInfo.timestamp);
+		Assert.assertNull(fileInfo.version);
+		Assert.assertTrue(fileInfo.latest);
+
+		// hashes that are not stored in binary form
+		fileInfo = fileList.get(1000);
+		Assert.assertEquals("ABC", fileInfo.hash);
+		Assert.assertEquals("v1", fileInfo.version);
+		Assert.assertFalse(fileInfo.latest);
+		Assert.assertNull(fileList.getHash(1001));
+		Assert.assertEquals("fba9dede5f27731c9771645a39863328-01", fileList.getHash(1002));
+
+		// iterate
+		int count = 0;
+		for (FileInfo f : fileList) {
+			Assert.assertEquals(fileList.getPath(count++), f.path);
+		}
+		Assert.assertEquals(1003, count);
+	}
+}
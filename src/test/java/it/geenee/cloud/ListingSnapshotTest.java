@@ -0,0 +1,80 @@
+package it.geenee.cloud;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.junit.Test;
+import org.junit.Assert;
+
+
+public class ListingSnapshotTest {
+
+	// listing that returns the given pages
+	static Storage.Listing<FileInfo> listing(FileInfo[]... pages) {
+		Iterator<FileInfo[]> it = Arrays.asList(pages).iterator();
+		return () -> ImmediateEventExecutor.INSTANCE.newSucceededFuture(it.hasNext() ? Arrays.asList(it.next()) : null);
+	}
+
+	static FileInfo file(String path, String hash, long size) {
+		return new FileInfo(path, hash, size, 0, null, true);
+	}
+
+	static List<String> diff(File snapshot, FileInfo[]... pages) throws Exception {
+		List<String> changes = new ArrayList<>();
+		ListingSnapshot.diff(listing(pages), snapshot, new ListingSnapshot.Changes() {
+			@Override
+			public void added(FileInfo fileInfo) {
+				changes.add("+" + fileInfo.path);
+			}
+
+			@Override
+			public void removed(FileInfo fileInfo) {
+				changes.add("-" + fileInfo.path);
+			}
+
+			@Override
+			public void modified(FileInfo oldFileInfo, FileInfo newFileInfo) {
+				changes.add("*" + newFileInfo.path);
+			}
+		});
+		return changes;
+	}
+
+	@Test
+	public void testDiff() throws Exception {
+		File snapshot = File.createTempFile("snapshot", ".bin");
+		snapshot.delete();
+
+		// first listing: all files are added
+		Assert.assertEquals(Arrays.asList("+/a", "+/b", "+/c"), diff(snapshot,
+				new FileInfo[] {file("/a", "1", 1), file("/b", "2", 2)},
+				new FileInfo[] {file("/c", "3", 3)}));
+
+		// no changes
+		Assert.assertEquals(Collections.emptyList(), diff(snapshot,
+				new FileInfo[] {file("/a", "1", 1), file("/b", "2", 2), file("/c", "3", 3)}));
+
+		// remove /a, modify /b, add /bb and /d
+		Assert.assertEquals(Arrays.asList("-/a", "*/b", "+/bb", "+/d"), diff(snapshot,
+				new FileInfo[] {file("/b", "22", 2), file("/bb", "4", 4)},
+				new FileInfo[] {file("/c", "3", 3), file("/d", "5", 5)}));
+
+		// remove all
+		Assert.assertEquals(Arrays.asList("-/b", "-/bb", "-/c", "-/d"), diff(snapshot));
+		snapshot.delete();
+	}
+
+	@Test
+	public void testCompare() throws Exception {
+		// code point order: U+FFFD is before U+1F600 although the surrogates of U+1F600 are before U+FFFD
+		Assert.assertTrue(ListingSnapshot.compare("\ufffd", "\ud83d\ude00") < 0);
+		Assert.assertTrue(ListingSnapshot.compare("a", "ab") < 0);
+		Assert.assertEquals(0, ListingSnapshot.compare("ab", "ab"));
+	}
+}
@@ -0,0 +1,49 @@
+package it.geenee.cloud;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+
+public class MetadataCacheTest {
+
+	@Test
+	public void testGetPutInvalidate() throws Exception {
+		MetadataCache cache = new MetadataCache(60000, 2);
+		Assert.assertNull(cache.get("list\nbucket/foo"));
+
+		// listing of prefix and info of a file
+		cache.put("list\nbucket/foo", "bucket/foo", true, "listing", cache.getGeneration());
+		cache.put("info\nbucket/bar", "bucket/bar", false, "info", cache.getGeneration());
+		Assert.assertEquals("listing", cache.get("list\nbucket/foo"));
+		Assert.assertEquals("info", cache.get("info\nbucket/bar"));
+
+		// upload of file with the prefix only invalidates the listing
+		cache.invalidate("bucket/foo/x");
+		Assert.assertNull(cache.get("list\nbucket/foo"));
+		Assert.assertEquals("info", cache.get("info\nbucket/bar"));
+
+		// result of a request that started before the invalidation is not added
+		long generation = cache.getGeneration();
+		cache.invalidate("bucket/bar");
+		Assert.assertNull(cache.get("info\nbucket/bar"));
+		cache.put("info\nbucket/bar", "bucket/bar", false, "old info", generation);
+		Assert.assertNull(cache.get("info\nbucket/bar"));
+
+		// least recently used entry gets evicted
+		cache.put("a", "a", false, "a", cache.getGeneration());
+		cache.put("b", "b", false, "b", cache.getGeneration());
+		cache.get("a");
+		cache.put("c", "c", false, "c", cache.getGeneration());
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals("a", cache.get("a"));
+		Assert.assertNull(cache.get("b"));
+	}
+
+	@Test
+	public void testExpire() throws Exception {
+		MetadataCache cache = new MetadataCache(0, 10);
+		cache.put("a", "a", false, "a", cache.getGeneration());
+		Assert.assertNull(cache.get("a"));
+		Assert.assertEquals(0, cache.size());
+	}
+}
@@ -0,0 +1,99 @@
+package it.geenee.cloud;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+
+public class TransferManagerTest {
+
+	// transfer with a fixed number of parts that records which parts were started
+	static class TestTransfer implements TransferManager.Schedulable {
+		final String name;
+		final List<String> started;
+		int remaining;
+
+		TestTransfer(String name, int partCount, List<String> started) {
+			this.name = name;
+			this.remaining = partCount;
+			this.started = started;
+		}
+
+		@Override
+		public boolean startNextPart() {
+			if (this.remaining == 0)
+				return false;
+			--this.remaining;
+			this.started.add(this.name);
+			return true;
+		}
+	}
+
+	@Test
+	public void testPriority() throws Exception {
+		List<String> started = new ArrayList<>();
+		TransferManager manager = new TransferManager(2);
+
+		// background transfer takes both slots
+		TestTransfer background = new TestTransfer("background", 4, started);
+		manager.add(background, -1, 5);
+		Assert.assertEquals(2, manager.getActiveCount());
+
+		// transfers with higher priority get the next free slots, same priority in the order they were added
+		TestTransfer first = new TestTransfer("first", 1, started);
+		TestTransfer second = new TestTransfer("second", 1, started);
+		manager.add(first, 0, 5);
+		manager.add(second, 0, 5);
+		Assert.assertEquals(2, started.size());
+
+		manager.release(background);
+		manager.release(background);
+		Assert.assertEquals("first", started.get(2));
+		Assert.assertEquals("second", started.get(3));
+
+		// done transfers release their slots
+		manager.remove(first);
+		manager.remove(second);
+		Assert.assertEquals("background", started.get(4));
+		Assert.assertEquals("background", started.get(5));
+		Assert.assertEquals(2, manager.getActiveCount());
+		Assert.assertEquals(1, manager.getTransferCount());
+
+		manager.remove(background);
+		Assert.assertEquals(0, manager.getActiveCount());
+	}
+
+	@Test
+	public void testMaxActiveCount() throws Exception {
+		List<String> started = new ArrayList<>();
+		TransferManager manager = new TransferManager(4);
+
+		// each transfer is limited to its own channel count
+		TestTransfer large = new TestTransfer("large", 10, started);
+		TestTransfer small = new TestTransfer("small", 10, started);
+		manager.add(large, 0, 3);
+		manager.add(small, 0, 3);
+		Assert.assertEquals(4, manager.getActiveCount());
+		Assert.assertEquals(7, large.remaining);
+		Assert.assertEquals(9, small.remaining);
+	}
+
+	@Test
+	public void testRequeue() throws Exception {
+		List<String> started = new ArrayList<>();
+		TransferManager manager = new TransferManager(4);
+
+		// transfer has no part left to start while its part is in progress
+		TestTransfer transfer = new TestTransfer("transfer", 1, started);
+		manager.add(transfer, 0, 3);
+		Assert.assertEquals(1, manager.getActiveCount());
+
+		// failed part gets queued again for retry and is started when the slot is released
+		transfer.remaining = 1;
+		manager.release(transfer);
+		Assert.assertEquals(2, started.size());
+		Assert.assertEquals(1, manager.getActiveCount());
+	}
+}
@@ -0,0 +1,120 @@
+package it.geenee.cloud.aws;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import it.geenee.cloud.http.HttpCloud;
+import it.geenee.cloud.http.HttpFuture;
+import it.geenee.cloud.http.XmlDecoder;
+import org.junit.Test;
+import org.junit.Assert;
+
+import java.io.ByteArrayInputStream;
+
+
+public class AwsDecoderTest {
+
+	static final String LIST_BUCKET_RESULT = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+			+ "<Name>bucket</Name><Prefix/><Marker></Marker><MaxKeys>1000</MaxKeys><IsTruncated>true</IsTruncated>"
+			+ "<!-- comment with <tag> -->"
+			+ "<Contents><Key>my image.jpg</Key><LastModified>2009-10-12T17:50:30.000Z</LastModified>"
+			+ "<ETag>&quot;fba9dede5f27731c9771645a39863328&quot;</ETag><Size>434234</Size><StorageClass>STANDARD</StorageClass>"
+			+ "<Owner><ID>75aa57f09aa0c8caeab4f8c24e99d10f8e7faeebf76c078efc7c6caea54ba06a</ID><DisplayName>mtd@amazon.com</DisplayName></Owner></Contents>"
+			+ "<Contents><Key>a&amp;b/\u00e4&#x20AC;<![CDATA[<&>]]></Key><LastModified>2009-10-12T17:50:31.000Z</LastModified>"
+			+ "<ETag>\"fba9dede5f27731c9771645a39863328-2\"</ETag><Size>0</Size><StorageClass>STANDARD</StorageClass></Contents>"
+			+ "</ListBucketResult>";
+
+	ListBucketResult decode(int chunkSize) throws Exception {
+		ListBucketResult.Decoder decoder = new ListBucketResult.Decoder();
+		byte[] data = LIST_BUCKET_RESULT.getBytes(HttpCloud.UTF_8);
+		for (int offset = 0; offset < data.length; offset += chunkSize) {
+			ByteBuf buf = Unpooled.wrappedBuffer(data, offset, Math.min(chunkSize, data.length - offset));
+			decoder.decode(buf);
+			Assert.assertFalse(buf.isReadable());
+		}
+		Assert.assertEquals(0, decoder.getDepth());
+		return decoder.result;
+	}
+
+	@Test
+	public void testListBucketResult() throws Exception {
+		// decode at once and in very small chunks
+		for (int chunkSize : new int[] {100000, 1, 7}) {
+			ListBucketResult result = decode(chunkSize);
+			Assert.assertEquals("bucket", result.bucket);
+			Assert.assertEquals("", result.prefix);
+			Assert.assertEquals(1000, result.maxKeys);
+			Assert.assertTrue(result.isTruncated);
+			Assert.assertEquals(2, result.contents.size());
+
+			ListBucketResult.Entry entry = result.contents.get(0);
+			Assert.assertEquals("my image.jpg", entry.key);
+			Assert.assertEquals("2009-10-12T17:50:30.000Z", entry.lastModified);
+			Assert.assertEquals("fba9dede5f27731c9771645a39863328", AwsCloud.getHash(entry.eTag));
+			Assert.assertEquals(434234, entry.size);
+			Assert.assertEquals("mtd@amazon.com", entry.owner.displayName);
+
+			entry = result.contents.get(1);
+			Assert.assertEquals("a&b/\u00e4\u20ac<&>", entry.key);
+			Assert.assertNull(entry.owner);
+		}
+	}
+
+	@Test
+	public void testListObjectsV2Result() throws Exception {
+		byte[] data = ("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+				+ "<Name>bucket</Name><Prefix>photos/</Prefix><KeyCount>2</KeyCount><MaxKeys>1000</MaxKeys>"
+				+ "<Delimiter>/</Delimiter><IsTruncated>true</IsTruncated><NextContinuationToken>1ueGcxLPRx1Tr/XYExHnhbYLgveDs2J/wm36Hy4vbOwM=</NextContinuationToken>"
+				+ "<Contents><Key>photos/a.jpg</Key><LastModified>2009-10-12T17:50:30.000Z</LastModified><ETag>\"fba9dede5f27731c9771645a39863328\"</ETag><Size>1</Size></Contents>"
+				+ "<CommonPrefixes><Prefix>photos/2006/</Prefix></CommonPrefixes>"
+				+ "<CommonPrefixes><Prefix>photos/2007/</Prefix></CommonPrefixes>"
+				+ "</ListBucketResult>").getBytes(HttpCloud.UTF_8);
+		ListBucketResult.Decoder decoder = new ListBucketResult.Decoder();
+		decoder.decode(data, 0, data.length);
+		ListBucketResult result = decoder.result;
+		Assert.assertEquals("photos/", result.prefix);
+		Assert.assertEquals(2, result.keyCount);
+		Assert.assertEquals("1ueGcxLPRx1Tr/XYExHnhbYLgveDs2J/wm36Hy4vbOwM=", result.nextContinuationToken);
+		Assert.assertEquals(1, result.contents.size());
+		Assert.assertEquals(2, result.commonPrefixes.size());
+		Assert.assertEquals("photos/2006/", result.commonPrefixes.get(0).prefix);
+		Assert.assertEquals("photos/2007/", result.commonPrefixes.get(1).prefix);
+	}
+
+	@Test
+	public void testDeleteResult() throws Exception {
+		byte[] data = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<DeleteResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+				+ "<Deleted><Key>sample1.txt</Key></Deleted>"
+				+ "<Error><Key>sample2.txt</Key><VersionId>v2</VersionId><Code>AccessDenied</Code><Message>Access Denied</Message></Error>"
+				+ "</DeleteResult>").getBytes(HttpCloud.UTF_8);
+		DeleteResult.Decoder decoder = new DeleteResult.Decoder();
+		decoder.decode(data, 0, data.length);
+		DeleteResult result = decoder.result;
+		Assert.assertEquals(1, result.deleted.size());
+		Assert.assertEquals("sample1.txt", result.deleted.get(0).key);
+		Assert.assertEquals(1, result.errors.size());
+		DeleteResult.Failure error = result.errors.get(0);
+		Assert.assertEquals("sample2.txt", error.key);
+		Assert.assertEquals("v2", error.versionId);
+		Assert.assertEquals("AccessDenied", error.code);
+		Assert.assertEquals("Access Denied", error.message);
+	}
+
+	@Test
+	public void testUnescape() throws Exception {
+		Assert.assertEquals("foo", XmlDecoder.unescape("foo"));
+		Assert.assertEquals("<a & 'b'>", XmlDecoder.unescape("&lt;a &amp; &apos;b&apos;&gt;"));
+		Assert.assertEquals("A\u20ac", XmlDecoder.unescape("&#65;&#x20AC;"));
+	}
+
+	@Test
+	public void testEmptyError() throws Exception {
+		// error response to a HEAD request has no body, e.g. 503 (slow down) gets retried
+		AwsCloud cloud = new AwsCloud(new HttpCloud.Globals(null, null, null, null), null);
+		int responseCode = cloud.fail("s3.amazonaws.com", 503, new ByteArrayInputStream(new byte[0]));
+		Assert.assertEquals(503, responseCode);
+		Assert.assertTrue(HttpFuture.isRetryCode(responseCode));
+		Assert.assertEquals(500, cloud.fail("ec2.amazonaws.com", 500, new ByteArrayInputStream(new byte[0])));
+	}
+}
@@ -0,0 +1,29 @@
+package it.geenee.cloud.aws;
+
+import it.geenee.cloud.ListingSnapshot;
+import org.junit.Test;
+import org.junit.Assert;
+
+
+public class AwsParallelListTest {
+
+	@Test
+	public void testSplitKey() throws Exception {
+		// split at the next sibling of the largest subtree that ends before the end of the range
+		Assert.assertEquals("foo/b", AwsParallelList.getSplitKey("foo/a/x", 4, null));
+		Assert.assertEquals("foo/a0", AwsParallelList.getSplitKey("foo/a/x", 4, "foo/b"));
+		Assert.assertEquals("foo/a/y", AwsParallelList.getSplitKey("foo/a/x", 4, "foo/a0"));
+
+		// flat key space
+		Assert.assertEquals("foo/1", AwsParallelList.getSplitKey("foo/000999", 4, null));
+		Assert.assertEquals("foo/01", AwsParallelList.getSplitKey("foo/000999", 4, "foo/1"));
+
+		// range can not be split
+		Assert.assertNull(AwsParallelList.getSplitKey("foo/a", 4, "foo/b"));
+
+		// start-after is before the split key and after all keys of the previous range that are not longer
+		String startAfter = AwsParallelList.getStartAfter("foo/b");
+		Assert.assertTrue(ListingSnapshot.compare(startAfter, "foo/b") < 0);
+		Assert.assertTrue(ListingSnapshot.compare(startAfter, "foo/a\uffff") > 0);
+	}
+}
@@ -4,6 +4,9 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -11,6 +14,7 @@ import java.util.Random;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import it.geenee.cloud.*;
+import it.geenee.cloud.http.HttpCloud;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -135,6 +139,15 @@ public class AwsStorageTest {
 			Assert.assertEquals(uploadInfo.hash, fileInfo.hash);
 			Assert.assertEquals(file.getChannel().size(), fileInfo.size);
 			Assert.assertEquals(uploadInfo.version, fileInfo.version);
+
+			// upload again: skipped because the remote file is identical
+			Transfer conditionalUploader = this.storage.startUpload(file.getChannel(), remotePath, true);
+			FileInfo conditionalInfo = conditionalUploader.get();
+			Assert.assertEquals(0, conditionalUploader.getPartCount());
+			Assert.assertEquals(uploadInfo.hash, conditionalInfo.hash);
+			conditionalUploader = this.storage.startUpload(file.getChannel(), remotePath, uploadInfo.hash);
+			conditionalUploader.get();
+			Assert.assertEquals(0, conditionalUploader.getPartCount());
 		}
 	}
 
@@ -146,7 +159,18 @@ public class AwsStorageTest {
 			FileInfo downloadInfo = downloader.getInfo();
 
 			// compare hash of downloaded local file with the hash (etag) returned by aws
-			Assert.assertEquals(this.storage.hash(file.getChannel()), downloadInfo.hash);
+			String hash = this.storage.hash(file.getChannel());
+			Assert.assertEquals(hash, downloadInfo.hash);
+
+			// hash was also verified while downloading as the part layout is the same as for the upload
+			Assert.assertTrue(downloadInfo.verified);
+
+			// download again with known hash: completes without transfer
+			Transfer conditionalDownloader = this.storage.startDownload(file.getChannel(), remotePath, null, hash);
+			FileInfo conditionalInfo = conditionalDownloader.get();
+			Assert.assertEquals(0, conditionalDownloader.getPartCount());
+			Assert.assertEquals(hash, conditionalInfo.hash);
+			Assert.assertEquals(downloadInfo.size, conditionalInfo.size);
 		}
 	}
 
@@ -178,6 +202,62 @@ public class AwsStorageTest {
 		testTransfer(largeFilePath, largeFileSize);
 	}
 
+	@Test
+	public void testUploadBatch() throws Exception {
+		// upload small files and check their hashes
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		for (int i = 0; i < 20; ++i) {
+			files.put(bucket + "/batch/" + i, ("file " + i).getBytes(HttpCloud.UTF_8));
+		}
+		BatchUploadReport report = this.storage.upload(files);
+		Assert.assertTrue(report.failures.isEmpty());
+		Assert.assertEquals(20, report.files.size());
+		Map<String, String> hashes = this.storage.listHashes(bucket + "/batch/");
+		Assert.assertEquals(report.files.get(bucket + "/batch/3").hash, hashes.get("3"));
+
+		// get file infos of the files (resolved by listing) and of a missing file
+		List<String> remotePaths = new ArrayList<>(files.keySet());
+		remotePaths.add(bucket + "/batch/missing");
+		Map<String, FileInfo> fileInfos = this.storage.getInfo(remotePaths);
+		Assert.assertEquals(21, fileInfos.size());
+		Assert.assertEquals(hashes.get("3"), fileInfos.get(bucket + "/batch/3").hash);
+		Assert.assertNull(fileInfos.get(bucket + "/batch/missing"));
+
+		Assert.assertEquals(0, this.storage.delete(files.keySet()).size());
+	}
+
+	@Test
+	public void testSync() throws Exception {
+		File directory = new File("tmp/sync");
+		String remotePath = bucket + "/sync/";
+		generateFile(new File(directory, "a"), 1000);
+		generateFile(new File(directory, "b/c"), 2000);
+
+		// first sync uploads all files, second sync finds them unchanged
+		SyncReport report = this.storage.sync(directory, remotePath, true);
+		Assert.assertTrue(report.failures.isEmpty());
+		Assert.assertEquals(2, report.uploaded + report.unchanged);
+		report = this.storage.sync(directory, remotePath, true);
+		Assert.assertEquals(0, report.uploaded);
+		Assert.assertEquals(2, report.unchanged);
+
+		// mirror the files back, a second mirror finds them unchanged
+		File mirrorDirectory = new File("tmp/mirror");
+		MirrorReport mirrorReport = this.storage.mirror(remotePath, mirrorDirectory);
+		Assert.assertTrue(mirrorReport.failures.isEmpty());
+		Assert.assertEquals(2, mirrorReport.downloaded + mirrorReport.unchanged);
+		Assert.assertEquals(1000, new File(mirrorDirectory, "a").length());
+		mirrorReport = this.storage.mirror(remotePath, mirrorDirectory);
+		Assert.assertEquals(0, mirrorReport.downloaded);
+		Assert.assertEquals(2, mirrorReport.unchanged);
+
+		// remote files that do not exist locally get deleted
+		new File(directory, "b/c").delete();
+		report = this.storage.sync(directory, remotePath, true);
+		Assert.assertEquals(1, report.deleted);
+		Assert.assertEquals(0, this.storage.delete(Arrays.asList(remotePath + "a")).size());
+	}
+
 	@Test
 	public void testGetAndDeleteUploads() throws Exception {
 		// get list of incomplete uploads
@@ -189,6 +269,11 @@ public class AwsStorageTest {
 			// delete incomplete upload
 			this.storage.deleteUpload(bucket + uploadInfo.path, uploadInfo.uploadId);
 		}
+
+		// nothing is left to clean up
+		UploadCleanupReport report = this.storage.deleteUploads(bucket, System.currentTimeMillis());
+		Assert.assertEquals(0, report.deleted);
+		Assert.assertTrue(report.failures.isEmpty());
 	}
 
 	@Test
@@ -214,6 +299,49 @@ public class AwsStorageTest {
 			// the two file lists are different
 			Assert.fail();
 		}
+
+		// list page by page and compare
+		Storage.Listing<FileInfo> listing = this.storage.listPages(bucket, Storage.ListMode.VERSIONED_LATEST);
+		int index = 0;
+		List<FileInfo> page;
+		while ((page = listing.next()) != null) {
+			for (FileInfo fileInfo : page) {
+				Assert.assertEquals(fileInfos[index++].path, fileInfo.path);
+			}
+		}
+		Assert.assertEquals(size, index);
+
+		// list in parallel and compare
+		FileInfo[] parallelFileInfos = this.storage.parallelList(bucket);
+		Assert.assertEquals(size, parallelFileInfos.length);
+		for (int i = 0; i < size; ++i) {
+			Assert.assertEquals(fileInfos[i].path, parallelFileInfos[i].path);
+			Assert.assertEquals(fileInfos[i].hash, parallelFileInfos[i].hash);
+		}
+
+		// walk directory tree level by level and compare
+		List<String> paths = new ArrayList<>();
+		walk(bucket, "", paths);
+		Assert.assertEquals(size, paths.size());
+		for (int i = 0; i < size; ++i) {
+			Assert.assertEquals(fileInfos[i].path, paths.get(i));
+		}
+	}
+
+	// paths of files and directories are relative to the remote path, therefore add the base path
+	void walk(String remotePath, String basePath, List<String> paths) throws Exception {
+		DirectoryInfo directoryInfo = this.storage.listDirectory(remotePath);
+		int fileIndex = 0;
+		for (String directory : directoryInfo.directories) {
+			// merge files and sub-directories in key order
+			while (fileIndex < directoryInfo.files.length && directoryInfo.files[fileIndex].path.compareTo(directory) < 0) {
+				paths.add(basePath + directoryInfo.files[fileIndex++].path);
+			}
+			walk(remotePath + directory, basePath + directory, paths);
+		}
+		while (fileIndex < directoryInfo.files.length) {
+			paths.add(basePath + directoryInfo.files[fileIndex++].path);
+		}
 	}
 
 	@Test
@@ -235,5 +363,11 @@ public class AwsStorageTest {
 			// the two file lists are different
 			Assert.fail();
 		}
+
+		// restoring to the current state changes nothing
+		RestoreReport report = this.storage.restore(bucket, Long.MAX_VALUE);
+		Assert.assertEquals(0, report.copied);
+		Assert.assertEquals(0, report.deleted);
+		Assert.assertTrue(report.failures.isEmpty());
 	}
 }
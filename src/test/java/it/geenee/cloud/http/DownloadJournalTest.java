@@ -0,0 +1,52 @@
+package it.geenee.cloud.http;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.BitSet;
+
+import it.geenee.cloud.FileInfo;
+import org.junit.Test;
+import org.junit.Assert;
+
+
+public class DownloadJournalTest {
+
+	@Test
+	public void testResume() throws Exception {
+		File path = File.createTempFile("download", ".journal");
+		path.delete();
+		try {
+			FileInfo fileInfo = new FileInfo("/foo", "0123456789abcdef-3", 20000000, 0, "v1", true);
+
+			// new journal has no completed parts
+			DownloadJournal journal = new DownloadJournal(path);
+			Assert.assertTrue(journal.open(fileInfo, 8000000).isEmpty());
+			journal.add(2);
+			journal.add(0);
+
+			// simulate crash while writing a line
+			try (FileOutputStream os = new FileOutputStream(path, true)) {
+				os.write('1');
+			}
+
+			// same file: completed parts are restored, partial line is ignored
+			BitSet completedParts = new DownloadJournal(path).open(fileInfo, 8000000);
+			Assert.assertEquals(2, completedParts.cardinality());
+			Assert.assertTrue(completedParts.get(0));
+			Assert.assertTrue(completedParts.get(2));
+
+			// continue journal after partial line was removed
+			journal = new DownloadJournal(path);
+			journal.open(fileInfo, 8000000);
+			journal.add(1);
+			Assert.assertEquals(3, new DownloadJournal(path).open(fileInfo, 8000000).cardinality());
+
+			// changed file: journal starts from scratch
+			FileInfo changedInfo = new FileInfo("/foo", "fedcba9876543210-3", 20000000, 0, "v2", true);
+			Assert.assertTrue(new DownloadJournal(path).open(changedInfo, 8000000).isEmpty());
+			Assert.assertTrue(new DownloadJournal(path).open(fileInfo, 8000000).isEmpty());
+		} finally {
+			path.delete();
+		}
+	}
+}
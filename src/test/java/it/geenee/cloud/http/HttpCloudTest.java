@@ -1,5 +1,7 @@
 package it.geenee.cloud.http;
 
+import java.text.SimpleDateFormat;
+
 import org.junit.Test;
 import org.junit.Assert;
 
@@ -27,4 +29,24 @@ public class HttpCloudTest {
 		Assert.assertEquals("some/path?foo", HttpCloud.addQuery("some/path", "foo"));
 		Assert.assertEquals("some/path?query&foo", HttpCloud.addQuery("some/path?query", "foo"));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testParseTimestamp() throws Exception {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+		for (String timestamp : new String[] {"2009-10-12T17:50:30.000Z", "1970-01-01T00:00:00.000Z", "2016-02-29T23:59:59.999Z",
+				"1969-12-31T23:59:59.500Z", "2100-03-01T12:00:00.001+02:00", "2016-06-15T08:30:00.000-05:30"}) {
+			Assert.assertEquals(format.parse(timestamp).getTime(), HttpCloud.parseTimestamp(timestamp));
+		}
+
+		// without or with more digits of fraction
+		Assert.assertEquals(1255369830000L, HttpCloud.parseTimestamp("2009-10-12T17:50:30Z"));
+		Assert.assertEquals(1255369830123L, HttpCloud.parseTimestamp("2009-10-12T17:50:30.123456Z"));
+
+		try {
+			HttpCloud.parseTimestamp("2009-10-12 17:50:30Z");
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package it.geenee.cloud.http;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.*;
+import it.geenee.cloud.Transfer;
+import it.geenee.cloud.aws.AwsCloud;
+import org.junit.Test;
+import org.junit.Assert;
+
+
+public class HttpTransferTest {
+
+	// transfer that does not connect
+	static class TestTransfer extends HttpTransfer {
+		TestTransfer(FileChannel file) {
+			super(new AwsCloud(new HttpCloud.Globals(null, null, null, null), null), AwsCloud.DEFAULT_CONFIGURATION, file,
+					"s3.amazonaws.com", "/bucket/file");
+		}
+
+		@Override
+		protected void connect(Part part) {
+		}
+
+		@Override
+		protected void completeTransfer() {
+		}
+	}
+
+	@Test
+	public void testSplit() throws Exception {
+		TestTransfer transfer = new TestTransfer(null);
+		HttpTransfer.Part part = transfer.new Part(0, 0, 8000);
+
+		// part that is not in progress is not split
+		Assert.assertEquals(0, part.split(1000));
+
+		// tail is at least the minimum length and the part still contains the received range
+		part.setState(Transfer.Part.State.PROGRESS);
+		part.receive(1000);
+		int tailLength = part.split(1000);
+		Assert.assertTrue(tailLength >= 1000);
+		Assert.assertTrue(part.length > 1000);
+		Assert.assertEquals(8000, part.length + tailLength);
+		Assert.assertTrue(part.isSplit());
+
+		// remaining range smaller than twice the minimum length is not split
+		part.receive(part.length - 2 * 1000 + 1);
+		Assert.assertEquals(0, part.split(1000));
+		part.receive(part.length - 2 * 1000);
+		Assert.assertEquals(1000, part.split(1000));
+	}
+
+	@Test
+	public void testSplitPart() throws Exception {
+		TestTransfer transfer = new TestTransfer(null);
+		transfer.minSplitLength = 1000;
+		HttpTransfer.Part part0 = transfer.new Part(0, 0, 8000);
+		HttpTransfer.Part part1 = transfer.new Part(1, 8000, 8000);
+		List<HttpTransfer.Part> parts = new ArrayList<>();
+		parts.add(part0);
+		parts.add(part1);
+		transfer.parts = new CopyOnWriteArrayList<>(parts);
+		part0.setState(Transfer.Part.State.PROGRESS);
+		part0.receive(6000);
+		part1.setState(Transfer.Part.State.PROGRESS);
+		part1.receive(1000);
+
+		// part with the largest remaining range gets split, the tail is a new part that starts at the new end
+		HttpTransfer.Part tail = transfer.splitPart();
+		Assert.assertEquals(2, tail.index);
+		Assert.assertEquals(part1.offset + part1.length, tail.offset);
+		Assert.assertEquals(16000, tail.offset + tail.length);
+		Assert.assertTrue(tail.isSplit());
+		Assert.assertEquals(3, transfer.getPartCount());
+
+		// no split if splitting is disabled
+		transfer.minSplitLength = 0;
+		Assert.assertNull(transfer.splitPart());
+	}
+
+	@Test
+	public void testSplitWhileReceiving() throws Exception {
+		File path = File.createTempFile("transfer", ".bin");
+		try (FileChannel file = FileChannel.open(path.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			byte[] data = new byte[4000];
+			new Random(1).nextBytes(data);
+
+			TestTransfer transfer = new TestTransfer(file);
+			HttpTransfer.Part part = transfer.new Part(0, 0, 4000);
+			List<HttpTransfer.Part> parts = new ArrayList<>();
+			parts.add(part);
+			transfer.parts = new CopyOnWriteArrayList<>(parts);
+			List<HttpTransfer.Part> done = new ArrayList<>();
+			EmbeddedChannel channel = new EmbeddedChannel(transfer.new DownloadHandler("/bucket/file", part) {
+				@Override
+				protected void success(HttpTransfer.Part part) throws Exception {
+					done.add(part);
+				}
+			});
+			channel.writeInbound(new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.PARTIAL_CONTENT));
+			channel.writeInbound(new DefaultHttpContent(Unpooled.wrappedBuffer(data, 0, 1000)));
+
+			// part gets split while the next chunk is on the way, the chunk is only written up to the new end of the part
+			int tailLength = part.split(1000);
+			Assert.assertEquals(1500, tailLength);
+			channel.writeInbound(new DefaultHttpContent(Unpooled.wrappedBuffer(data, 1000, 2000)));
+			Assert.assertEquals(1, done.size());
+			Assert.assertEquals(2500, file.size());
+
+			// hash of part only covers the data of the shortened part
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			md.update(data, 0, 2500);
+			Assert.assertArrayEquals(md.digest(), part.md5);
+		} finally {
+			path.delete();
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package it.geenee.cloud.http;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.junit.Assert;
+
+
+public class UploadJournalTest {
+
+	@Test
+	public void testResume() throws Exception {
+		File path = File.createTempFile("upload", ".journal");
+		path.delete();
+		File file1 = File.createTempFile("upload", ".bin");
+		File file2 = File.createTempFile("upload", ".bin");
+		try {
+			// new journal has no unfinished uploads
+			UploadJournal journal = new UploadJournal(path);
+			Assert.assertTrue(journal.open().isEmpty());
+
+			Map<String, File> files = new LinkedHashMap<>();
+			files.put("/foo", file1);
+			files.put("/bar", file2);
+			List<UploadJournal.Entry> entries = journal.add(files, 8000000);
+			journal.done(entries.get(0));
+			journal.initiated(entries.get(1), "upload1");
+			journal.partDone(entries.get(1), 2, "\"etag2\"");
+			journal.partDone(entries.get(1), 0, "\"etag0\"");
+
+			// simulate crash while writing a line
+			try (FileOutputStream os = new FileOutputStream(path, true)) {
+				os.write("P\t1\t1".getBytes(HttpCloud.UTF_8));
+			}
+
+			// finished upload is removed, multipart upload is restored, partial line is ignored
+			journal = new UploadJournal(path);
+			entries = journal.open();
+			Assert.assertEquals(1, entries.size());
+			UploadJournal.Entry entry = entries.get(0);
+			Assert.assertEquals("/bar", entry.remotePath);
+			Assert.assertEquals(file2.getAbsoluteFile(), entry.file);
+			Assert.assertEquals(8000000, entry.partSize);
+			Assert.assertTrue(entry.isUnchanged());
+			Assert.assertEquals("upload1", entry.uploadId);
+			Assert.assertEquals(2, entry.parts.size());
+			Assert.assertEquals("\"etag0\"", entry.parts.get(0));
+			Assert.assertEquals("\"etag2\"", entry.parts.get(2));
+
+			// continue journal after it was compacted, new entries get new ids
+			journal.partDone(entry, 1, "\"etag1\"");
+			UploadJournal.Entry entry2 = journal.add(files, 8000000).get(0);
+			Assert.assertNotEquals(entry.id, entry2.id);
+			journal.done(entry);
+			entries = new UploadJournal(path).open();
+			Assert.assertEquals(2, entries.size());
+			Assert.assertEquals(entry2.id, entries.get(0).id);
+			Assert.assertNull(entries.get(0).uploadId);
+
+			// changed local file
+			try (FileOutputStream os = new FileOutputStream(file1, true)) {
+				os.write(1);
+			}
+			Assert.assertFalse(entries.get(0).isUnchanged());
+		} finally {
+			path.delete();
+			file1.delete();
+			file2.delete();
+		}
+	}
+}